@@ -0,0 +1,88 @@
+package com.example.expensetracker.benchmark;
+
+import com.example.expensetracker.model.ApiToken;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.repository.ApiTokenRepository;
+import com.example.expensetracker.security.AuthenticatedUser;
+import com.example.expensetracker.service.ApiTokenService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request authentication cost: HTTP Basic runs BCrypt at the encoder's default strength, as
+ * SecurityConfig does; a token runs one SHA-256 plus a cache lookup, or on a miss a repository lookup.
+ * The repository here answers from memory, so the miss case leaves out the database round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiAuthenticationBenchmark {
+
+    private static final String PASSWORD = "Benchmark#Login1";
+    private static final String TOKEN = ApiTokenService.TOKEN_PREFIX + "SGVsbG8tYmVuY2htYXJrLXRva2VuLTMyLWJ5dGVzISE";
+
+    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+
+    private String passwordHash;
+    private ApiTokenService cachingTokenService;
+    private ApiTokenService uncachedTokenService;
+
+    @Setup
+    public void setUp() throws Exception {
+        passwordHash = passwordEncoder.encode(PASSWORD);
+
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("benchmark");
+        user.setRoles(Set.of("ROLE_USER"));
+        ApiToken token = new ApiToken();
+        token.setTokenHash(HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest(TOKEN.getBytes(StandardCharsets.UTF_8))));
+        token.setExpiresAt(LocalDateTime.now().plusDays(1));
+        token.setUser(user);
+
+        ApiTokenRepository repository = inMemoryRepository(token);
+        cachingTokenService = new ApiTokenService(repository, null, "30d", 10_000, "1h");
+        uncachedTokenService = new ApiTokenService(repository, null, "30d", 0, "1h");
+        cachingTokenService.authenticate(TOKEN);
+    }
+
+    @Benchmark
+    public boolean basicAuthBcrypt() {
+        return passwordEncoder.matches(PASSWORD, passwordHash);
+    }
+
+    @Benchmark
+    public Optional<AuthenticatedUser> tokenCached() {
+        return cachingTokenService.authenticate(TOKEN);
+    }
+
+    @Benchmark
+    public Optional<AuthenticatedUser> tokenCacheMiss() {
+        return uncachedTokenService.authenticate(TOKEN);
+    }
+
+    private static ApiTokenRepository inMemoryRepository(ApiToken token) {
+        return (ApiTokenRepository) Proxy.newProxyInstance(ApiTokenRepository.class.getClassLoader(),
+                new Class<?>[]{ApiTokenRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findByTokenHash")) {
+                        return token.getTokenHash().equals(args[0]) ? Optional.of(token) : Optional.empty();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
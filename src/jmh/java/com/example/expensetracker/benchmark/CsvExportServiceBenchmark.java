@@ -0,0 +1,34 @@
+package com.example.expensetracker.benchmark;
+
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.util.CsvExportService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CsvExportServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    private final CsvExportService csvExportService = new CsvExportService(new SimpleMeterRegistry());
+    private List<Expense> expenses;
+
+    @Setup
+    public void setUp() {
+        expenses = SyntheticExpenses.generate(rows, 42);
+    }
+
+    @Benchmark
+    public byte[] exportExpensesToCsv() {
+        return csvExportService.exportExpensesToCsv(expenses);
+    }
+}
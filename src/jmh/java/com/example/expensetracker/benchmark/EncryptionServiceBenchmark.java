@@ -0,0 +1,85 @@
+package com.example.expensetracker.benchmark;
+
+import com.example.expensetracker.service.EncryptionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Master-password operations pay for a PBKDF2 derivation each; data-key operations are one AES call.
+ * The k1 (CBC) and k2 (GCM) decrypt benchmarks compare the two data-key formats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptionServiceBenchmark {
+
+    private static final String MASTER_PASSWORD = "Benchmark#Master1";
+    private static final String PLAIN_PASSWORD = "correct-horse-battery-staple";
+
+    private final EncryptionService encryptionService = new EncryptionService(new SimpleMeterRegistry());
+
+    private String masterPasswordCiphertext;
+    private byte[] dataKey;
+    private String gcmCiphertext;
+    private String cbcCiphertext;
+
+    @Setup
+    public void setUp() throws Exception {
+        masterPasswordCiphertext = encryptionService.encrypt(PLAIN_PASSWORD, MASTER_PASSWORD);
+
+        dataKey = new byte[32];
+        new Random(42).nextBytes(dataKey);
+        gcmCiphertext = encryptionService.encryptWithDataKey(PLAIN_PASSWORD, dataKey);
+        cbcCiphertext = legacyCbcCiphertext(PLAIN_PASSWORD, dataKey);
+    }
+
+    @Benchmark
+    public String encryptWithMasterPassword() throws Exception {
+        return encryptionService.encrypt(PLAIN_PASSWORD, MASTER_PASSWORD);
+    }
+
+    @Benchmark
+    public String decryptWithMasterPassword() throws Exception {
+        return encryptionService.decrypt(masterPasswordCiphertext, MASTER_PASSWORD);
+    }
+
+    @Benchmark
+    public String encryptWithDataKey() throws Exception {
+        return encryptionService.encryptWithDataKey(PLAIN_PASSWORD, dataKey);
+    }
+
+    @Benchmark
+    public String decryptDataKeyGcm() throws Exception {
+        return encryptionService.decryptWithDataKey(gcmCiphertext, dataKey);
+    }
+
+    @Benchmark
+    public String decryptDataKeyCbc() throws Exception {
+        return encryptionService.decryptWithDataKey(cbcCiphertext, dataKey);
+    }
+
+    // EncryptionService no longer writes k1, so build one the way it used to
+    private static String legacyCbcCiphertext(String plainText, byte[] key) throws Exception {
+        byte[] iv = new byte[16];
+        new Random(7).nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        byte[] encrypted = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
+
+        byte[] combined = new byte[iv.length + encrypted.length];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+        return EncryptionService.DATA_KEY_CBC_PREFIX + Base64.getEncoder().encodeToString(combined);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.expensetracker.benchmark;
+
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.service.ExpenseColumns;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ExpenseColumnsBenchmark {
+
+    @Param({"1000", "100000"})
+    private int rows;
+
+    private ExpenseColumns columns;
+    private ExpenseColumns.Filter year2022;
+    private ExpenseColumns.Grouping categoryAndSubCategory;
+    private long[] sums;
+    private long[] counts;
+
+    @Setup
+    public void setUp() {
+        // Label ids stand in for ExpenseLabelDictionary ids
+        Map<String, Integer> labelIds = new HashMap<>();
+        ExpenseColumns.Builder builder = new ExpenseColumns.Builder();
+        for (Expense expense : SyntheticExpenses.generate(rows, 42)) {
+            builder.add(expense.getId(), (int) expense.getDate().toEpochDay(),
+                    ExpenseColumns.toCents(expense.getAmount()), labelId(labelIds, expense.getCategory()),
+                    labelId(labelIds, expense.getSubCategory()), labelId(labelIds, expense.getCardUsed()));
+        }
+        columns = builder.build();
+        year2022 = ExpenseColumns.Filter.between(LocalDate.of(2022, 1, 1), LocalDate.of(2023, 1, 1));
+        categoryAndSubCategory = ExpenseColumns.Dimension.CATEGORY.then(ExpenseColumns.Dimension.SUB_CATEGORY);
+        int keys = categoryAndSubCategory.size(columns);
+        sums = new long[keys];
+        counts = new long[keys];
+    }
+
+    @Benchmark
+    public long[] sumByCategoryAndSubCategory() {
+        Arrays.fill(sums, 0);
+        Arrays.fill(counts, 0);
+        columns.aggregate(ExpenseColumns.Filter.ALL, categoryAndSubCategory, sums, counts);
+        return sums;
+    }
+
+    @Benchmark
+    public long[] sumByMonthOfYear() {
+        return columns.aggregate(year2022, ExpenseColumns.Dimension.MONTH_OF_YEAR).cents();
+    }
+
+    private static int labelId(Map<String, Integer> labelIds, String name) {
+        return name == null ? 0 : labelIds.computeIfAbsent(name, key -> labelIds.size() + 1);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.expensetracker.benchmark;
+
+import com.example.expensetracker.ExpenseTrackerApplication;
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.repository.ExpenseRepository;
+import com.example.expensetracker.repository.ExpenseSpecifications;
+import com.example.expensetracker.repository.UserRepository;
+import com.example.expensetracker.service.ExpenseLabelDictionary;
+import com.example.expensetracker.service.ExpenseService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs ExpenseService.searchExpenses against an in-memory H2 database seeded with synthetic
+ * expenses, so the numbers include the query, not just in-memory filtering.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class ExpenseSearchBenchmark {
+
+    private static final int INSERT_CHUNK = 5_000;
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private ExpenseService expenseService;
+    private Long userId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // As arguments, since default properties lose to application.properties and would leave
+        // the benchmark writing to the file database
+        context = new SpringApplicationBuilder(ExpenseTrackerApplication.class)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.show-sql=false",
+                        "--server.port=0",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.example.expensetracker=WARN");
+        expenseService = context.getBean(ExpenseService.class);
+
+        User user = new User();
+        user.setUsername("benchmark");
+        user.setEmail("benchmark@example.com");
+        user.setPassword("not-used");
+        user.setRoles(Set.of("ROLE_USER"));
+        user = context.getBean(UserRepository.class).save(user);
+        userId = user.getId();
+
+        ExpenseRepository expenseRepository = context.getBean(ExpenseRepository.class);
+        ExpenseLabelDictionary expenseLabelDictionary = context.getBean(ExpenseLabelDictionary.class);
+        List<Expense> expenses = SyntheticExpenses.generate(rows, 42);
+        for (int from = 0; from < expenses.size(); from += INSERT_CHUNK) {
+            List<Expense> chunk = expenses.subList(from, Math.min(from + INSERT_CHUNK, expenses.size()));
+            for (Expense expense : chunk) {
+                expense.setId(null);
+                expense.setUser(user);
+            }
+            expenseLabelDictionary.encode(userId, chunk);
+            expenseRepository.saveAll(chunk);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Expense> byCategory() {
+        return expenseService.searchExpenses(userId, "food", null, null, null, null, null, Sort.unsorted());
+    }
+
+    @Benchmark
+    public List<Expense> byDateRangeAndAmount() {
+        return expenseService.searchExpenses(userId, null, LocalDate.of(2022, 1, 1), LocalDate.of(2022, 3, 31),
+                new BigDecimal("50.00"), new BigDecimal("250.00"), null, Sort.unsorted());
+    }
+
+    @Benchmark
+    public List<Expense> byNameSortedByAmount() {
+        return expenseService.searchExpenses(userId, null, null, null, null, null, "expense 12",
+                ExpenseSpecifications.sortBy("amount", "desc"));
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.expensetracker.benchmark;
+
+import com.example.expensetracker.util.PasswordValidator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasswordValidatorBenchmark {
+
+    // Too short, missing character classes, and valid
+    @Param({"abc", "lowercaseonly123", "Val1d#Passw0rd!"})
+    private String password;
+
+    @Benchmark
+    public String validateAndGetError() {
+        return PasswordValidator.validateAndGetError(password);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.expensetracker.benchmark;
+
+import com.example.expensetracker.model.Expense;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Fixed seed so every run and every commit benchmarks the same rows
+final class SyntheticExpenses {
+
+    private static final String[] CATEGORIES = {"Food", "Transport", "Housing", "Utilities", "Entertainment", "Health"};
+    private static final String[] SUB_CATEGORIES = {"Groceries", "Restaurant", "Fuel", "Rent", "Electricity", "Movies"};
+    private static final String[] LOCATIONS = {"Downtown", "Mall", "Online", "Airport", "Suburb"};
+    private static final String[] CARDS = {"Visa", "Mastercard", "Amex", null};
+    private static final LocalDate START = LocalDate.of(2020, 1, 1);
+
+    private SyntheticExpenses() {
+    }
+
+    static List<Expense> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<Expense> expenses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Expense expense = new Expense();
+            expense.setId((long) i + 1);
+            expense.setName("Expense " + i);
+            expense.setAmount(BigDecimal.valueOf(100 + random.nextInt(50_000), 2));
+            expense.setDate(START.plusDays(random.nextInt(5 * 365)));
+            expense.setCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            expense.setSubCategory(SUB_CATEGORIES[random.nextInt(SUB_CATEGORIES.length)]);
+            expense.setLocation(LOCATIONS[random.nextInt(LOCATIONS.length)]);
+            expense.setCardUsed(CARDS[random.nextInt(CARDS.length)]);
+            expenses.add(expense);
+        }
+        return expenses;
+    }
+}
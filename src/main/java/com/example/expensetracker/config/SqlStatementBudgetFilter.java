@@ -0,0 +1,95 @@
+package com.example.expensetracker.config;
+
+import com.example.expensetracker.util.SqlStatementCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the SQL statements each HTTP request runs and flags requests that go over the budget or
+ * repeat one statement shape often enough to look like N+1 loading. Runs ahead of the security
+ * chain so user and token lookups are counted too. Work handed to other threads (streamed
+ * exports, worker pools) is not attributed to the request.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SqlStatementBudgetFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+    private final int maxStatements;
+    private final int maxRepeats;
+    private final boolean failOnExceed;
+    private final List<String> excludedPaths;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    public SqlStatementBudgetFilter(MeterRegistry meterRegistry,
+                                    @Value("${sql.budget.max-statements:30}") int maxStatements,
+                                    @Value("${sql.budget.max-repeats:10}") int maxRepeats,
+                                    @Value("${sql.budget.fail-on-exceed:false}") boolean failOnExceed,
+                                    @Value("${sql.budget.excluded-paths:}") List<String> excludedPaths) {
+        this.meterRegistry = meterRegistry;
+        this.maxStatements = maxStatements;
+        this.maxRepeats = maxRepeats;
+        this.failOnExceed = failOnExceed;
+        this.excludedPaths = excludedPaths;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            filterChain.doFilter(request, response);
+            check(request, scope);
+        }
+    }
+
+    private void check(HttpServletRequest request, SqlStatementCounter.Scope scope) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        DistributionSummary.builder("http.server.requests.sql.statements")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(scope.count());
+
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (excludedPaths.stream().anyMatch(excluded -> pathMatcher.match(excluded, path))) {
+            return;
+        }
+
+        List<String> problems = new ArrayList<>();
+        if (scope.count() > maxStatements) {
+            problems.add(scope.count() + " statements, budget is " + maxStatements);
+        }
+        scope.mostRepeated()
+                .filter(entry -> entry.getValue() >= maxRepeats)
+                .map(Map.Entry::getKey)
+                .ifPresent(shape -> problems.add("possible N+1, ran " + scope.shapes().get(shape) + "x: " + shape));
+        if (problems.isEmpty()) {
+            return;
+        }
+
+        String message = "SQL budget exceeded by " + request.getMethod() + " " + uri + ": " + String.join("; ", problems);
+        if (failOnExceed) {
+            throw new IllegalStateException(message + "\n" + scope.describe());
+        }
+        log.warn(message);
+    }
+}
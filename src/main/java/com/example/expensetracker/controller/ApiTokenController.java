@@ -0,0 +1,66 @@
+package com.example.expensetracker.controller;
+
+import com.example.expensetracker.model.ApiToken;
+import com.example.expensetracker.security.AuthenticatedUser;
+import com.example.expensetracker.service.ApiTokenService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Controller
+@RequestMapping("/api/tokens")
+@RequiredArgsConstructor
+public class ApiTokenController {
+
+    private final ApiTokenService apiTokenService;
+
+    // Requires a password login (form or HTTP Basic); the plain token is only returned here
+    @PostMapping
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> issueToken(@RequestParam(required = false) String name,
+                                                          @RequestParam(required = false) Integer validDays,
+                                                          Authentication authentication,
+                                                          @AuthenticationPrincipal AuthenticatedUser principal) {
+        if (authentication instanceof PreAuthenticatedAuthenticationToken) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        
+        Duration validity = validDays != null && validDays > 0 ? Duration.ofDays(validDays) : null;
+        ApiTokenService.IssuedApiToken issued = apiTokenService.issueToken(principal.getId(), name, validity);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", issued.token().getId());
+        response.put("name", issued.token().getName());
+        response.put("token", issued.plainToken());
+        response.put("expiresAt", issued.token().getExpiresAt());
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @GetMapping
+    @ResponseBody
+    public List<ApiToken> listTokens(@AuthenticationPrincipal AuthenticatedUser principal) {
+        return apiTokenService.getTokens(principal.getId());
+    }
+
+    @DeleteMapping("/{id}")
+    @ResponseBody
+    public ResponseEntity<Void> revokeToken(@PathVariable Long id,
+                                            @AuthenticationPrincipal AuthenticatedUser principal) {
+        try {
+            apiTokenService.revokeToken(principal.getId(), id);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
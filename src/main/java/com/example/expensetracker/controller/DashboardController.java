@@ -1,22 +1,38 @@
 package com.example.expensetracker.controller;
 
+import com.example.expensetracker.security.AuthenticatedUser;
+import com.example.expensetracker.service.DashboardCache;
+import com.example.expensetracker.service.DashboardSummary;
 import com.example.expensetracker.service.ExpenseService;
+import com.example.expensetracker.service.ExpenseTimeSeries;
+import com.example.expensetracker.service.ExpenseTimeSeriesService;
+import com.example.expensetracker.service.TimeBucket;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Controller
 @RequiredArgsConstructor
 public class DashboardController {
 
     private final ExpenseService expenseService;
+    private final DashboardCache dashboardCache;
+    private final ExpenseTimeSeriesService expenseTimeSeriesService;
 
     @GetMapping("/")
     public String home() {
@@ -24,35 +40,28 @@ public class DashboardController {
     }
 
     @GetMapping("/dashboard")
-    public String dashboard(Model model, Authentication authentication) {
-        String username = authentication.getName();
+    public String dashboard(Model model, @AuthenticationPrincipal AuthenticatedUser principal) {
+        Long userId = principal.getId();
         int currentYear = LocalDate.now().getYear();
         
-        // Get expense statistics
-        Map<String, BigDecimal> categoryExpenses = expenseService.getExpenseSumByCategory(username);
-        Map<Integer, BigDecimal> monthlyExpenses = expenseService.getMonthlyExpenseSumByYear(username, currentYear);
-        Map<String, BigDecimal> cardExpenses = expenseService.getExpenseSumByCard(username);
-        
-        // Calculate total expenses
-        BigDecimal totalExpenses = categoryExpenses.values().stream()
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        DashboardSummary summary = expenseService.getDashboardSummary(userId, currentYear);
         
         // Add data to model
-        model.addAttribute("categoryExpenses", categoryExpenses);
-        model.addAttribute("monthlyExpenses", monthlyExpenses);
-        model.addAttribute("cardExpenses", cardExpenses);
-        model.addAttribute("totalExpenses", totalExpenses);
+        model.addAttribute("categoryExpenses", summary.categoryExpenses());
+        model.addAttribute("monthlyExpenses", summary.monthlyExpenses());
+        model.addAttribute("cardExpenses", summary.cardExpenses());
+        model.addAttribute("totalExpenses", summary.totalExpenses());
         model.addAttribute("currentYear", currentYear);
         
         return "dashboard";
     }
 
     @GetMapping("/dashboard/year")
-    public String dashboardByYear(@RequestParam int year, Model model, Authentication authentication) {
-        String username = authentication.getName();
+    public String dashboardByYear(@RequestParam int year, Model model, @AuthenticationPrincipal AuthenticatedUser principal) {
+        Long userId = principal.getId();
         
         // Get expense statistics for the specified year
-        Map<Integer, BigDecimal> monthlyExpenses = expenseService.getMonthlyExpenseSumByYear(username, year);
+        Map<Integer, BigDecimal> monthlyExpenses = expenseService.getMonthlyExpenseSumByYear(userId, year);
         
         // Calculate total expenses for the year
         BigDecimal totalYearlyExpenses = monthlyExpenses.values().stream()
@@ -65,4 +74,58 @@ public class DashboardController {
         
         return "dashboard-year";
     }
+
+    // Totals per day, week, month, quarter or year over any range, optionally per category or card
+    // and alongside the same range in up to compareYears earlier years
+    @GetMapping("/dashboard/api/timeseries")
+    @ResponseBody
+    public ResponseEntity<?> timeSeries(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "month") String bucket,
+            @RequestParam(defaultValue = "none") String breakdown,
+            @RequestParam(defaultValue = "0") int compareYears,
+            @AuthenticationPrincipal AuthenticatedUser principal) {
+        TimeBucket timeBucket = parse(TimeBucket.class, bucket);
+        if (timeBucket == null) {
+            return badRequest("bucket must be one of " + names(TimeBucket.values()));
+        }
+        ExpenseTimeSeries.Breakdown seriesBreakdown = parse(ExpenseTimeSeries.Breakdown.class, breakdown);
+        if (seriesBreakdown == null) {
+            return badRequest("breakdown must be one of " + names(ExpenseTimeSeries.Breakdown.values()));
+        }
+        Optional<String> error = expenseTimeSeriesService.validate(from, to, timeBucket, compareYears);
+        if (error.isPresent()) {
+            return badRequest(error.get());
+        }
+        
+        return ResponseEntity.ok(expenseTimeSeriesService.getTimeSeries(principal.getId(), from, to,
+                timeBucket, seriesBreakdown, compareYears));
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/admin/dashboard-cache/stats")
+    @ResponseBody
+    public DashboardCache.Stats dashboardCacheStats() {
+        return dashboardCache.stats();
+    }
+
+    private static ResponseEntity<Map<String, String>> badRequest(String error) {
+        return ResponseEntity.badRequest().body(Map.of("error", error));
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String value) {
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().equalsIgnoreCase(value)) {
+                return constant;
+            }
+        }
+        return null;
+    }
+
+    private static String names(Enum<?>[] constants) {
+        return Arrays.stream(constants)
+                .map(constant -> constant.name().toLowerCase(Locale.ROOT))
+                .collect(Collectors.joining(", "));
+    }
 }
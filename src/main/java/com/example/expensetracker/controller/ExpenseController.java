@@ -1,25 +1,46 @@
 package com.example.expensetracker.controller;
 
 import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.repository.ExpenseSpecifications;
+import com.example.expensetracker.security.AuthenticatedUser;
+import com.example.expensetracker.service.ExpenseImportResult;
+import com.example.expensetracker.service.ExpenseImportService;
+import com.example.expensetracker.service.ExpensePage;
 import com.example.expensetracker.service.ExpenseService;
 import com.example.expensetracker.util.CsvExportService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.apache.commons.csv.CSVPrinter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 @Controller
 @RequestMapping("/expenses")
@@ -28,15 +49,61 @@ public class ExpenseController {
 
     private final ExpenseService expenseService;
     private final CsvExportService csvExportService;
+    private final ExpenseImportService expenseImportService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${expenses.page-size.default:25}")
+    private int defaultPageSize;
+
+    @Value("${expenses.page-size.max:200}")
+    private int maxPageSize;
+
+    @Value("${expenses.search.max-results:200}")
+    private int maxSearchResults;
 
     @GetMapping
-    public String getAllExpenses(Model model, Authentication authentication) {
-        List<Expense> expenses = expenseService.getExpensesByUser(authentication.getName());
-        model.addAttribute("expenses", expenses);
+    public String getAllExpenses(@RequestParam(required = false) String cursor,
+                                 @RequestParam(required = false) Integer size,
+                                 Model model, @AuthenticationPrincipal AuthenticatedUser principal) {
+        int pageSize = resolvePageSize(size);
+        ExpensePage page;
+        try {
+            page = expenseService.getExpensePage(principal.getId(), cursor, pageSize);
+        } catch (IllegalArgumentException e) {
+            return "redirect:/expenses";
+        }
+        model.addAttribute("expenses", page.items());
+        model.addAttribute("nextCursor", page.nextCursor());
+        model.addAttribute("hasNext", page.hasNext());
+        model.addAttribute("firstPage", cursor == null || cursor.isEmpty());
+        model.addAttribute("pageSize", pageSize);
         model.addAttribute("expense", new Expense());
         return "expenses/list";
     }
 
+    @GetMapping("/api")
+    @ResponseBody
+    public ResponseEntity<ExpensePage> getExpensesApi(@RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) Integer size,
+                                                      @AuthenticationPrincipal AuthenticatedUser principal) {
+        try {
+            return ResponseEntity.ok(
+                    expenseService.getExpensePage(principal.getId(), cursor, resolvePageSize(size)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Full-text search over name, location, category and sub category, best matches first
+    @GetMapping("/api/search")
+    @ResponseBody
+    public List<Expense> searchExpensesApi(@RequestParam String q,
+                                           @RequestParam(required = false) Integer limit,
+                                           @AuthenticationPrincipal AuthenticatedUser principal) {
+        int resolvedLimit = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxSearchResults);
+        return expenseService.searchExpensesByText(principal.getId(), q, resolvedLimit);
+    }
+
     @GetMapping("/add")
     public String showAddForm(Model model) {
         model.addAttribute("expense", new Expense());
@@ -45,18 +112,50 @@ public class ExpenseController {
 
     @PostMapping("/add")
     public String addExpense(@Valid @ModelAttribute("expense") Expense expense, 
-                            BindingResult result, Authentication authentication) {
+                            BindingResult result, @AuthenticationPrincipal AuthenticatedUser principal) {
         if (result.hasErrors()) {
             return "expenses/add";
         }
         
-        expenseService.saveExpense(expense, authentication.getName());
+        expenseService.saveExpense(expense, principal.getId());
         return "redirect:/expenses";
     }
 
+    @GetMapping("/import")
+    public String showImportForm() {
+        return "expenses/import";
+    }
+
+    @PostMapping("/import")
+    public String importExpenses(@RequestParam("file") MultipartFile file,
+                                 Model model, @AuthenticationPrincipal AuthenticatedUser principal) {
+        if (file.isEmpty()) {
+            model.addAttribute("error", "Please choose a CSV file to import");
+            return "expenses/import";
+        }
+        
+        try (InputStream in = file.getInputStream()) {
+            model.addAttribute("result", expenseImportService.importCsv(in, principal.getId()));
+        } catch (IOException | UncheckedIOException e) {
+            model.addAttribute("error", "Failed to read CSV file: " + e.getMessage());
+        }
+        return "expenses/import";
+    }
+
+    @PostMapping("/api/import")
+    @ResponseBody
+    public ResponseEntity<ExpenseImportResult> importExpensesApi(@RequestParam("file") MultipartFile file,
+                                                                 @AuthenticationPrincipal AuthenticatedUser principal) {
+        try (InputStream in = file.getInputStream()) {
+            return ResponseEntity.ok(expenseImportService.importCsv(in, principal.getId()));
+        } catch (IOException | UncheckedIOException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/search")
-    public String showSearchForm(Model model) {
-        model.addAttribute("categories", List.of("Food", "Transportation", "Housing", "Entertainment", "Utilities", "Healthcare", "Other"));
+    public String showSearchForm(Model model, @AuthenticationPrincipal AuthenticatedUser principal) {
+        model.addAttribute("categories", expenseService.getCategories(principal.getId()));
         return "expenses/search";
     }
 
@@ -66,11 +165,15 @@ public class ExpenseController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
             @RequestParam(required = false) String name,
-            Model model, Authentication authentication) {
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false) String sortDir,
+            Model model, @AuthenticationPrincipal AuthenticatedUser principal) {
         
         List<Expense> searchResults = expenseService.searchExpenses(
-                authentication.getName(), category, startDate, endDate, minAmount, name);
+                principal.getId(), category, startDate, endDate, minAmount, maxAmount, name,
+                ExpenseSpecifications.sortBy(sortBy, sortDir));
         
         model.addAttribute("expenses", searchResults);
         model.addAttribute("searchPerformed", true);
@@ -78,34 +181,86 @@ public class ExpenseController {
     }
 
     @GetMapping("/export")
-    public ResponseEntity<byte[]> exportExpenses(
+    public ResponseEntity<StreamingResponseBody> exportExpenses(
             @RequestParam(required = false) String category,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
             @RequestParam(required = false) String name,
-            Authentication authentication) {
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false) String sortDir,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @AuthenticationPrincipal AuthenticatedUser principal) {
         
-        List<Expense> expenses = expenseService.searchExpenses(
-                authentication.getName(), category, startDate, endDate, minAmount, name);
+        Long userId = principal.getId();
+        Sort sort = ExpenseSpecifications.sortBy(sortBy, sortDir);
         
-        byte[] csvContent = csvExportService.exportExpensesToCsv(expenses);
+        // Rows are read from a database cursor and written as they arrive, so heap use doesn't grow with the export
+        StreamingResponseBody body = out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, 8192) : out;
+            try (CSVPrinter csvPrinter = csvExportService.createExpensePrinter(target)) {
+                expenseService.streamExpenses(userId, category, startDate, endDate, minAmount, maxAmount,
+                        name, sort, expense -> csvExportService.printExpense(csvPrinter, expense));
+            }
+        };
         
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType("text/csv"));
-        headers.setContentDispositionFormData("attachment", "expenses.csv");
+        if (gzip) {
+            headers.setContentType(MediaType.parseMediaType("application/gzip"));
+            headers.setContentDispositionFormData("attachment", "expenses.csv.gz");
+        } else {
+            headers.setContentType(MediaType.parseMediaType("text/csv"));
+            headers.setContentDispositionFormData("attachment", "expenses.csv");
+        }
         
-        return new ResponseEntity<>(csvContent, headers, HttpStatus.OK);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
     }
 
     @PostMapping("/api/add")
     @ResponseBody
     public ResponseEntity<Expense> addExpenseApi(@Valid @RequestBody Expense expense, 
-                                               Authentication authentication) {
-        Expense savedExpense = expenseService.saveExpense(expense, authentication.getName());
+                                               @AuthenticationPrincipal AuthenticatedUser principal) {
+        Expense savedExpense = expenseService.saveExpense(expense, principal.getId());
         return ResponseEntity.status(HttpStatus.CREATED).body(savedExpense);
     }
 
+    @PostMapping(value = "/api/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public void addExpensesBatchApi(HttpServletRequest request, HttpServletResponse response,
+                                    @AuthenticationPrincipal AuthenticatedUser principal) throws IOException {
+        boolean ndjson = request.getContentType() != null
+                && MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.APPLICATION_NDJSON);
+        
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(ndjson ? MediaType.APPLICATION_NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        
+        // Results are written as each chunk commits, so neither side holds the whole batch in memory
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            // A failed ingest must not end in a well-formed document, so closing doesn't complete the array
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            if (ndjson) {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+            } else {
+                generator.writeStartArray();
+            }
+            
+            expenseImportService.ingestJson(request.getInputStream(), principal.getId(), result -> {
+                try {
+                    generator.writeObject(result);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            
+            if (ndjson) {
+                generator.writeRaw('\n');
+            } else {
+                generator.writeEndArray();
+            }
+        }
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @GetMapping("/admin/all")
     public String getAllUsersExpenses(Model model) {
@@ -113,4 +268,11 @@ public class ExpenseController {
         model.addAttribute("expenses", allExpenses);
         return "expenses/admin-view";
     }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(size, maxPageSize);
+    }
 }
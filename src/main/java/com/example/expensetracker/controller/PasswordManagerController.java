@@ -2,26 +2,38 @@ package com.example.expensetracker.controller;
 
 import com.example.expensetracker.model.PasswordEntry;
 import com.example.expensetracker.model.User;
+import com.example.expensetracker.model.VaultMigration;
 import com.example.expensetracker.repository.UserRepository;
+import com.example.expensetracker.security.AuthenticatedUser;
 import com.example.expensetracker.service.PasswordEntryService;
+import com.example.expensetracker.service.PasswordExportFormat;
+import com.example.expensetracker.service.PasswordExportService;
+import com.example.expensetracker.service.PasswordRevealResult;
+import com.example.expensetracker.service.VaultMigrationService;
+import com.example.expensetracker.service.VaultService;
 import com.example.expensetracker.util.PasswordValidator;
+import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.io.ByteArrayOutputStream;
-import java.io.PrintWriter;
-import java.time.format.DateTimeFormatter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @Controller
 @RequestMapping("/passwords")
@@ -31,21 +43,72 @@ public class PasswordManagerController {
     private final PasswordEntryService passwordEntryService;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final VaultService vaultService;
+    private final VaultMigrationService vaultMigrationService;
+    private final PasswordExportService passwordExportService;
+
+    @Value("${passwords.page-size.default:25}")
+    private int defaultPageSize;
+
+    @Value("${passwords.page-size.max:200}")
+    private int maxPageSize;
+
+    @Value("${vault.reveal.max-batch-size:100}")
+    private int maxRevealBatchSize;
 
     @GetMapping
-    public String listPasswords(@RequestParam(required = false) String sortBy, 
-                               Authentication authentication, 
+    public String listPasswords(@RequestParam(required = false) String q,
+                               @RequestParam(required = false) String sortBy, 
+                               @RequestParam(required = false) String sortDir,
+                               @RequestParam(defaultValue = "0") int page,
+                               @RequestParam(required = false) Integer size,
+                               @AuthenticationPrincipal AuthenticatedUser principal, 
+                               HttpSession session,
                                Model model) {
-        User user = userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        List<PasswordEntry> entries = passwordEntryService.getAllPasswordEntries(user, sortBy);
-        model.addAttribute("entries", entries);
+        Page<PasswordEntry> entries = passwordEntryService.searchPasswordEntries(
+                principal.getId(), q, sortBy, sortDir, Math.max(page, 0), resolvePageSize(size));
+        model.addAttribute("entries", entries.getContent());
+        model.addAttribute("page", entries);
+        model.addAttribute("q", q != null ? q : "");
         model.addAttribute("sortBy", sortBy != null ? sortBy : "");
-        model.addAttribute("isAdmin", user.isAdmin());
+        model.addAttribute("sortDir", "desc".equalsIgnoreCase(sortDir) ? "desc" : "asc");
+        model.addAttribute("isAdmin", principal.isAdmin());
+        model.addAttribute("vaultUnlocked", vaultService.isUnlocked(principal.getId(), session.getId()));
+        model.addAttribute("migration", vaultMigrationService.getMigration(principal.getId())
+                .filter(migration -> migration.getStatus() != VaultMigration.Status.COMPLETED)
+                .orElse(null));
         return "passwords/list";
     }
 
+    @GetMapping("/migration")
+    @ResponseBody
+    public ResponseEntity<VaultMigration> migrationStatus(@AuthenticationPrincipal AuthenticatedUser principal) {
+        return ResponseEntity.of(vaultMigrationService.getMigration(principal.getId()));
+    }
+
+    @PostMapping("/unlock")
+    public String unlockVault(@RequestParam String masterPassword,
+                              @AuthenticationPrincipal AuthenticatedUser principal,
+                              HttpSession session,
+                              RedirectAttributes redirectAttributes) {
+        try {
+            vaultService.unlock(principal.getId(), session.getId(), masterPassword);
+            redirectAttributes.addFlashAttribute("success", "Vault unlocked");
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("error", "Failed to unlock vault: " + e.getMessage());
+        }
+        return "redirect:/passwords";
+    }
+
+    @PostMapping("/lock")
+    public String lockVault(@AuthenticationPrincipal AuthenticatedUser principal,
+                            HttpSession session,
+                            RedirectAttributes redirectAttributes) {
+        vaultService.lock(principal.getId(), session.getId());
+        redirectAttributes.addFlashAttribute("success", "Vault locked");
+        return "redirect:/passwords";
+    }
+
     @GetMapping("/new")
     public String showNewPasswordForm(Model model) {
         model.addAttribute("entry", new PasswordEntry());
@@ -55,37 +118,32 @@ public class PasswordManagerController {
     @PostMapping("/save")
     public String savePassword(@ModelAttribute PasswordEntry entry,
                               @RequestParam String plainPassword,
-                              @RequestParam String masterPassword,
-                              Authentication authentication,
+                              @RequestParam(required = false) String masterPassword,
+                              @AuthenticationPrincipal AuthenticatedUser principal,
+                              HttpSession session,
                               RedirectAttributes redirectAttributes) {
+        byte[] dataKey = null;
         try {
-            User user = userRepository.findByUsername(authentication.getName())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-            
-            if (!passwordEncoder.matches(masterPassword, user.getPassword())) {
-                redirectAttributes.addFlashAttribute("error", "Invalid master password");
-                return "redirect:/passwords/new";
-            }
+            dataKey = vaultKey(principal, session, masterPassword);
             
-            entry.setUser(user);
-            passwordEntryService.createPasswordEntry(entry, plainPassword, masterPassword, user.getUsername());
+            entry.setUser(userRepository.getReferenceById(principal.getId()));
+            passwordEntryService.createPasswordEntry(entry, plainPassword, dataKey, principal.getUsername());
             redirectAttributes.addFlashAttribute("success", "Password entry created successfully");
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", "Failed to save password: " + e.getMessage());
             return "redirect:/passwords/new";
+        } finally {
+            zero(dataKey);
         }
         return "redirect:/passwords";
     }
 
     @GetMapping("/edit/{id}")
-    public String showEditPasswordForm(@PathVariable Long id, Model model, Authentication authentication) {
-        User user = userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
+    public String showEditPasswordForm(@PathVariable Long id, Model model, @AuthenticationPrincipal AuthenticatedUser principal) {
         PasswordEntry entry = passwordEntryService.getPasswordEntryById(id)
                 .orElseThrow(() -> new RuntimeException("Password entry not found"));
         
-        if (!entry.getUser().getId().equals(user.getId())) {
+        if (!entry.getUser().getId().equals(principal.getId())) {
             throw new RuntimeException("Unauthorized access");
         }
         
@@ -97,39 +155,34 @@ public class PasswordManagerController {
     public String updatePassword(@PathVariable Long id,
                                 @ModelAttribute PasswordEntry entry,
                                 @RequestParam(required = false) String plainPassword,
-                                @RequestParam String masterPassword,
-                                Authentication authentication,
+                                @RequestParam(required = false) String masterPassword,
+                                @AuthenticationPrincipal AuthenticatedUser principal,
+                                HttpSession session,
                                 RedirectAttributes redirectAttributes) {
+        byte[] dataKey = null;
         try {
-            User user = userRepository.findByUsername(authentication.getName())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-            
-            if (!passwordEncoder.matches(masterPassword, user.getPassword())) {
-                redirectAttributes.addFlashAttribute("error", "Invalid master password");
-                return "redirect:/passwords/edit/" + id;
-            }
+            dataKey = vaultKey(principal, session, masterPassword);
             
-            passwordEntryService.updatePasswordEntry(id, entry, plainPassword, masterPassword, user.getUsername());
+            passwordEntryService.updatePasswordEntry(id, entry, plainPassword, dataKey, principal.getUsername());
             redirectAttributes.addFlashAttribute("success", "Password entry updated successfully");
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", "Failed to update password: " + e.getMessage());
             return "redirect:/passwords/edit/" + id;
+        } finally {
+            zero(dataKey);
         }
         return "redirect:/passwords";
     }
 
     @PostMapping("/delete/{id}")
     public String deletePassword(@PathVariable Long id, 
-                                 Authentication authentication,
+                                 @AuthenticationPrincipal AuthenticatedUser principal,
                                  RedirectAttributes redirectAttributes) {
         try {
-            User user = userRepository.findByUsername(authentication.getName())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-            
             PasswordEntry entry = passwordEntryService.getPasswordEntryById(id)
                     .orElseThrow(() -> new RuntimeException("Password entry not found"));
             
-            if (!entry.getUser().getId().equals(user.getId())) {
+            if (!entry.getUser().getId().equals(principal.getId())) {
                 throw new RuntimeException("Unauthorized access");
             }
             
@@ -144,87 +197,104 @@ public class PasswordManagerController {
     @GetMapping("/decrypt/{id}")
     @ResponseBody
     public ResponseEntity<Map<String, String>> decryptPassword(@PathVariable Long id,
-                                                               @RequestParam String masterPassword,
-                                                               Authentication authentication) {
+                                                               @RequestParam(required = false) String masterPassword,
+                                                               @AuthenticationPrincipal AuthenticatedUser principal,
+                                                               HttpSession session) {
         Map<String, String> response = new HashMap<>();
+        byte[] dataKey = null;
         try {
-            User user = userRepository.findByUsername(authentication.getName())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-            
-            if (!passwordEncoder.matches(masterPassword, user.getPassword())) {
-                response.put("error", "Invalid master password");
-                return ResponseEntity.badRequest().body(response);
-            }
+            dataKey = vaultKey(principal, session, masterPassword);
             
             PasswordEntry entry = passwordEntryService.getPasswordEntryById(id)
                     .orElseThrow(() -> new RuntimeException("Password entry not found"));
             
-            if (!entry.getUser().getId().equals(user.getId())) {
+            if (!entry.getUser().getId().equals(principal.getId())) {
                 response.put("error", "Unauthorized access");
                 return ResponseEntity.badRequest().body(response);
             }
             
-            String plainPassword = passwordEntryService.decryptPassword(entry, masterPassword);
+            String plainPassword = passwordEntryService.decryptPassword(entry, dataKey, masterPassword);
             response.put("password", plainPassword);
             return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            response.put("error", e.getMessage());
+            response.put("locked", "true");
+            return ResponseEntity.status(HttpStatus.LOCKED).body(response);
         } catch (Exception e) {
             response.put("error", "Failed to decrypt password: " + e.getMessage());
             return ResponseEntity.badRequest().body(response);
+        } finally {
+            zero(dataKey);
+        }
+    }
+
+    @PostMapping("/decrypt")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> decryptPasswords(@RequestParam List<Long> ids,
+                                                                @RequestParam(required = false) String masterPassword,
+                                                                @AuthenticationPrincipal AuthenticatedUser principal,
+                                                                HttpSession session) {
+        Map<String, Object> response = new HashMap<>();
+        if (ids.size() > maxRevealBatchSize) {
+            response.put("error", "At most " + maxRevealBatchSize + " passwords can be revealed at once");
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        byte[] dataKey = null;
+        try {
+            dataKey = vaultKey(principal, session, masterPassword);
+            PasswordRevealResult result = passwordEntryService.revealPasswords(principal.getId(), ids, dataKey, masterPassword);
+            response.put("passwords", result.passwords());
+            response.put("errors", result.errors());
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            response.put("error", e.getMessage());
+            response.put("locked", true);
+            return ResponseEntity.status(HttpStatus.LOCKED).body(response);
+        } catch (Exception e) {
+            response.put("error", "Failed to decrypt passwords: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } finally {
+            zero(dataKey);
         }
     }
 
     @GetMapping("/export")
-    public ResponseEntity<byte[]> exportPasswords(@RequestParam String masterPassword,
-                                                  Authentication authentication) {
+    public ResponseEntity<StreamingResponseBody> exportPasswords(@RequestParam(required = false) String masterPassword,
+                                                                 @RequestParam(defaultValue = "TEXT") PasswordExportFormat format,
+                                                                 @AuthenticationPrincipal AuthenticatedUser principal,
+                                                                 HttpSession session) {
+        byte[] dataKey;
         try {
-            User user = userRepository.findByUsername(authentication.getName())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-            
-            if (!passwordEncoder.matches(masterPassword, user.getPassword())) {
-                return ResponseEntity.badRequest().build();
-            }
-            
-            List<PasswordEntry> entries = passwordEntryService.getAllPasswordEntries(user, null);
-            
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            PrintWriter writer = new PrintWriter(baos);
-            
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-            
-            writer.println("Password Manager Export");
-            writer.println("=======================");
-            writer.println();
-            
-            for (PasswordEntry entry : entries) {
-                writer.println("Name: " + entry.getName());
-                writer.println("Description: " + (entry.getDescription() != null ? entry.getDescription() : ""));
-                writer.println("URL: " + (entry.getUrl() != null ? entry.getUrl() : ""));
-                writer.println("Username: " + (entry.getUsername() != null ? entry.getUsername() : ""));
-                writer.println("Email: " + (entry.getEmail() != null ? entry.getEmail() : ""));
-                
-                String plainPassword = passwordEntryService.decryptPassword(entry, masterPassword);
-                writer.println("Password: " + plainPassword);
-                
-                writer.println("Date Created: " + entry.getDateCreated().format(formatter));
-                writer.println("Date Last Modified: " + entry.getDateLastModified().format(formatter));
-                writer.println("Modified By: " + entry.getModifiedBy());
-                writer.println("---");
-                writer.println();
-            }
-            
-            writer.flush();
-            writer.close();
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.TEXT_PLAIN);
-            headers.setContentDispositionFormData("attachment", "passwords_export.txt");
-            
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(baos.toByteArray());
+            dataKey = vaultKey(principal, session, masterPassword);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
+        
+        // Checked before the first byte: a decrypt failure once streaming has started can only truncate the file
+        String exportError = exportError(principal.getId(), masterPassword);
+        if (exportError != null) {
+            zero(dataKey);
+            StreamingResponseBody message = out -> out.write(exportError.getBytes(StandardCharsets.UTF_8));
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(message);
+        }
+        
+        List<PasswordEntry> entries = passwordEntryService.getAllPasswordEntries(principal.getId());
+        
+        // Decrypted entries are written as they're ready; the key copy is zeroed once the response is done
+        StreamingResponseBody body = out -> {
+            try {
+                passwordExportService.export(entries, dataKey, masterPassword, format, out);
+            } finally {
+                zero(dataKey);
+            }
+        };
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(format.getContentType()));
+        headers.setContentDispositionFormData("attachment", "passwords_export." + format.getExtension());
+        
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
     }
 
     @GetMapping("/change-password")
@@ -236,10 +306,11 @@ public class PasswordManagerController {
     public String changePassword(@RequestParam String currentPassword,
                                 @RequestParam String newPassword,
                                 @RequestParam String confirmPassword,
-                                Authentication authentication,
+                                @AuthenticationPrincipal AuthenticatedUser principal,
+                                HttpSession session,
                                 RedirectAttributes redirectAttributes) {
         try {
-            User user = userRepository.findByUsername(authentication.getName())
+            User user = userRepository.findById(principal.getId())
                     .orElseThrow(() -> new RuntimeException("User not found"));
             
             if (!user.isAdmin()) {
@@ -263,16 +334,70 @@ public class PasswordManagerController {
                 return "redirect:/passwords/change-password";
             }
             
-            passwordEntryService.reencryptAllPasswords(user, currentPassword, newPassword);
+            if (vaultService.isMigrationPending(user.getId())) {
+                Optional<VaultMigration> migration = vaultMigrationService.getMigration(user.getId())
+                        .filter(current -> current.getStatus() == VaultMigration.Status.INCOMPLETE);
+                if (migration.isPresent()) {
+                    redirectAttributes.addFlashAttribute("error", migration.get().getFailedEntries()
+                            + " stored password(s) could not be decrypted with your current password and would be lost."
+                            + " Re-enter or delete them before changing it.");
+                    return "redirect:/passwords";
+                }
+                // Unlocking starts moving the remaining entries to the vault key in the background
+                vaultService.unlock(user.getId(), session.getId(), currentPassword);
+                redirectAttributes.addFlashAttribute("error",
+                        "Your stored passwords are being moved to the vault key. Try again once that has finished.");
+                return "redirect:/passwords";
+            }
+            
+            vaultService.changeMasterPassword(user.getId(), currentPassword, newPassword);
             
             user.setPassword(passwordEncoder.encode(newPassword));
             userRepository.save(user);
             
-            redirectAttributes.addFlashAttribute("success", "Password changed successfully. All stored passwords have been re-encrypted.");
+            redirectAttributes.addFlashAttribute("success", "Password changed successfully. The vault key has been re-encrypted.");
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", "Failed to change password: " + e.getMessage());
             return "redirect:/passwords/change-password";
         }
         return "redirect:/passwords";
     }
+
+    // Entries still under the master password can only be exported with it, and not at all once a
+    // migration run has failed to decrypt them
+    private String exportError(Long userId, String masterPassword) {
+        if (!passwordEntryService.hasLegacyEntries(userId)) {
+            return null;
+        }
+        if (masterPassword == null || masterPassword.isEmpty()) {
+            return "Some stored passwords are still encrypted with the master password. Enter it to export.";
+        }
+        return vaultMigrationService.getMigration(userId)
+                .filter(migration -> migration.getStatus() == VaultMigration.Status.INCOMPLETE)
+                .map(migration -> migration.getFailedEntries()
+                        + " stored password(s) could not be decrypted. Re-enter or delete them before exporting.")
+                .orElse(null);
+    }
+
+    // A master password sent with the request is always checked by unlocking with it, since entries not yet
+    // moved to the vault key are decrypted with it; otherwise the session must be unlocked
+    private byte[] vaultKey(AuthenticatedUser principal, HttpSession session, String masterPassword) throws Exception {
+        if (masterPassword != null && !masterPassword.isEmpty()) {
+            vaultService.unlock(principal.getId(), session.getId(), masterPassword);
+        }
+        return vaultService.requireKey(principal.getId(), session.getId());
+    }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    private static void zero(byte[] dataKey) {
+        if (dataKey != null) {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
 }
@@ -1,25 +1,38 @@
 package com.example.expensetracker.model;
 
+import com.example.expensetracker.service.ExpenseLabelListener;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "expenses")
+@Table(name = "expenses", indexes = {
+        @Index(name = "idx_expenses_user_date", columnList = "user_id, date, id"),
+        @Index(name = "idx_expenses_user_category_id", columnList = "user_id, category_id, sub_category_id"),
+        @Index(name = "idx_expenses_user_card_id", columnList = "user_id, card_id")
+})
+// Category, sub category and card are stored as ids into expense_labels; the listener fills in the names on load
+@EntityListeners(ExpenseLabelListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Expense {
 
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "expenses_seq")
+    @SequenceGenerator(name = "expenses_seq", sequenceName = "expenses_seq", allocationSize = Expense.ID_ALLOCATION_SIZE)
     private Long id;
 
     @NotBlank(message = "Name is required")
@@ -33,14 +46,55 @@ public class Expense {
     private LocalDate date;
 
     @NotBlank(message = "Category is required")
+    @Transient
     private String category;
 
+    @Transient
     private String subCategory;
 
     private String location;
 
+    @Transient
     private String cardUsed;
 
+    // Set from the names above by ExpenseLabelDictionary.encode before an expense is saved
+    @JsonIgnore
+    @Column(name = "category_id")
+    private Integer categoryId;
+
+    @JsonIgnore
+    @Column(name = "sub_category_id")
+    private Integer subCategoryId;
+
+    @JsonIgnore
+    @Column(name = "card_id")
+    private Integer cardId;
+
+    // Read-only views of the ids above, only there so queries can sort by label name
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "category_id", insertable = false, updatable = false)
+    private ExpenseLabel categoryLabel;
+
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "sub_category_id", insertable = false, updatable = false)
+    private ExpenseLabel subCategoryLabel;
+
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "card_id", insertable = false, updatable = false)
+    private ExpenseLabel cardLabel;
+
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
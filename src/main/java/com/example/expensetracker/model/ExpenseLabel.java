@@ -0,0 +1,40 @@
+package com.example.expensetracker.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One distinct category, sub category or card name of a user. Expenses and rollups store the id
+ * instead of repeating the text on every row.
+ */
+@Entity
+@Table(name = "expense_labels", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_expense_labels_user_kind_name", columnNames = {"user_id", "kind", "name"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseLabel {
+
+    public enum Kind {
+        CATEGORY,
+        SUB_CATEGORY,
+        CARD
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Kind kind;
+
+    @Column(nullable = false)
+    private String name;
+}
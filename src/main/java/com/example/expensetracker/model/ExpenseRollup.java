@@ -0,0 +1,48 @@
+package com.example.expensetracker.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Entity
+// The key (user, year, month, category, sub category, card) is unique; ExpenseRollupService.ensureUniqueKey
+// adds the index, as it needs NULLS NOT DISTINCT, which @Index can't express
+@Table(name = "expense_rollups")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "expense_year", nullable = false)
+    private int year;
+
+    @Column(name = "expense_month", nullable = false)
+    private int month;
+
+    // Ids into expense_labels, as on Expense. Nullable only so the column can be added to an existing table.
+    @Column(name = "category_id")
+    private Integer categoryId;
+
+    @Column(name = "sub_category_id")
+    private Integer subCategoryId;
+
+    @Column(name = "card_id")
+    private Integer cardId;
+
+    @Column(nullable = false)
+    private BigDecimal total;
+
+    @Column(nullable = false)
+    private long expenseCount;
+}
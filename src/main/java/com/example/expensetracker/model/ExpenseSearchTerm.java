@@ -0,0 +1,47 @@
+package com.example.expensetracker.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * One row per distinct word of an expense's name, location, category and sub category. user_id is
+ * copied from the expense so a prefix lookup is a single range scan of the (user_id, term) index.
+ * Maintained by ExpenseSearchIndex; no foreign keys, so bulk writes and deletes need no ordering.
+ */
+@Entity
+@Table(name = "expense_search_terms", indexes = {
+        @Index(name = "idx_expense_search_terms_user_term", columnList = "user_id, term, expense_id")
+})
+@IdClass(ExpenseSearchTerm.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseSearchTerm {
+
+    @Id
+    @Column(name = "expense_id")
+    private Long expenseId;
+
+    @Id
+    @Column(length = 100)
+    private String term;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // Highest weight of the fields the word occurs in; matches in the name rank above matches in the category
+    @Column(nullable = false)
+    private int weight;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long expenseId;
+        private String term;
+    }
+}
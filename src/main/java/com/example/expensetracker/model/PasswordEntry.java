@@ -1,18 +1,28 @@
 package com.example.expensetracker.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
 
 @Entity
-@Table(name = "password_entries")
+@Table(name = "password_entries", indexes = {
+        @Index(name = "idx_password_entries_user_name", columnList = "user_id, name")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+// Only changed columns are written, so editing an entry can't put back a ciphertext the vault migration replaced
+@DynamicUpdate
 public class PasswordEntry {
 
     @Id
@@ -47,6 +57,17 @@ public class PasswordEntry {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
+    // Lower-cased words of name, url, username, email and description; the list filter prefix-matches these
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ElementCollection
+    @CollectionTable(name = "password_entry_terms",
+            joinColumns = @JoinColumn(name = "entry_id"),
+            indexes = @Index(name = "idx_password_entry_terms_term", columnList = "term, entry_id"))
+    @Column(name = "term", nullable = false, length = 100)
+    private Set<String> searchTerms = new HashSet<>();
+
     @PrePersist
     protected void onCreate() {
         dateCreated = LocalDateTime.now();
@@ -0,0 +1,44 @@
+package com.example.expensetracker.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "vault_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaultKey {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // The user's data key, encrypted under a key derived from the master password
+    @Column(nullable = false, length = 255)
+    private String wrappedKey;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime dateLastModified;
+
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false, unique = true)
+    private User user;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        dateLastModified = createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        dateLastModified = LocalDateTime.now();
+    }
+}
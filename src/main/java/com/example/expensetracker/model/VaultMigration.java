@@ -0,0 +1,59 @@
+package com.example.expensetracker.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Progress of moving a user's entries from master-password encryption to the vault data key
+@Entity
+@Table(name = "vault_migrations")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaultMigration {
+
+    // INCOMPLETE: every entry was tried but some couldn't be decrypted and are still under the master password
+    public enum Status {
+        RUNNING, COMPLETED, INCOMPLETE, FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status;
+
+    private int totalEntries;
+
+    private int migratedEntries;
+
+    private int failedEntries;
+
+    // Entries up to this id have been handled by a committed chunk; a resumed run starts after it
+    @Column(nullable = false)
+    private Long lastEntryId = 0L;
+
+    @Column(length = 1000)
+    private String message;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime dateLastModified;
+
+    @JsonIgnore
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false, unique = true)
+    private User user;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        dateLastModified = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.expensetracker.repository;
+
+import com.example.expensetracker.model.ApiToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ApiTokenRepository extends JpaRepository<ApiToken, Long> {
+    
+    @Query("SELECT t FROM ApiToken t JOIN FETCH t.user WHERE t.tokenHash = ?1")
+    Optional<ApiToken> findByTokenHash(String tokenHash);
+    
+    List<ApiToken> findByUserIdOrderByCreatedAtDesc(Long userId);
+    
+    @Modifying
+    @Query("DELETE FROM ApiToken t WHERE t.user.id = ?1")
+    int deleteByUserId(Long userId);
+}
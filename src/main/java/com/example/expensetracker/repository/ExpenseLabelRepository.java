@@ -0,0 +1,13 @@
+package com.example.expensetracker.repository;
+
+import com.example.expensetracker.model.ExpenseLabel;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ExpenseLabelRepository extends JpaRepository<ExpenseLabel, Integer> {
+
+    List<ExpenseLabel> findByUserIdAndKindOrderByName(Long userId, ExpenseLabel.Kind kind);
+}
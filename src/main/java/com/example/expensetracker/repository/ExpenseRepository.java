@@ -2,7 +2,9 @@ package com.example.expensetracker.repository;
 
 import com.example.expensetracker.model.Expense;
 import com.example.expensetracker.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -12,11 +14,15 @@ import java.util.List;
 import java.util.Map;
 
 @Repository
-public interface ExpenseRepository extends JpaRepository<Expense, Long> {
+public interface ExpenseRepository extends JpaRepository<Expense, Long>, JpaSpecificationExecutor<Expense>,
+        ExpenseRepositoryCustom {
     
     List<Expense> findByUser(User user);
     
-    List<Expense> findByUserAndCategoryContainingIgnoreCase(User user, String category);
+    // Fetches the owner in the same statement; the admin view prints every expense's username.
+    // A left join so expenses without an owner are still listed
+    @Query("SELECT e FROM Expense e LEFT JOIN FETCH e.user ORDER BY e.date DESC, e.id DESC")
+    List<Expense> findAllWithUser();
     
     List<Expense> findByUserAndDateBetween(User user, LocalDate startDate, LocalDate endDate);
     
@@ -24,15 +30,23 @@ public interface ExpenseRepository extends JpaRepository<Expense, Long> {
     
     List<Expense> findByUserAndNameContainingIgnoreCase(User user, String name);
     
-    @Query("SELECT e.category, SUM(e.amount) FROM Expense e WHERE e.user = ?1 GROUP BY e.category")
+    @Query("SELECT e FROM Expense e WHERE e.user = ?1 ORDER BY e.date DESC, e.id DESC")
+    List<Expense> findFirstPage(User user, Pageable limit);
+    
+    @Query("SELECT e FROM Expense e WHERE e.user = ?1 AND (e.date < ?2 OR (e.date = ?2 AND e.id < ?3)) ORDER BY e.date DESC, e.id DESC")
+    List<Expense> findPageAfter(User user, LocalDate date, Long id, Pageable limit);
+    
+    @Query("SELECT e.categoryId, SUM(e.amount) FROM Expense e WHERE e.user = ?1 GROUP BY e.categoryId")
     List<Object[]> findExpenseSumByCategory(User user);
     
-    @Query("SELECT e.category, e.subCategory, SUM(e.amount) FROM Expense e WHERE e.user = ?1 GROUP BY e.category, e.subCategory")
+    @Query("SELECT e.categoryId, e.subCategoryId, SUM(e.amount) FROM Expense e WHERE e.user = ?1 GROUP BY e.categoryId, e.subCategoryId")
     List<Object[]> findExpenseSumByCategoryAndSubCategory(User user);
     
-    @Query("SELECT FUNCTION('MONTH', e.date) as month, SUM(e.amount) FROM Expense e WHERE e.user = ?1 AND FUNCTION('YEAR', e.date) = ?2 GROUP BY FUNCTION('MONTH', e.date)")
-    List<Object[]> findMonthlyExpenseSumByYear(User user, int year);
-    
-    @Query("SELECT e.cardUsed, SUM(e.amount) FROM Expense e WHERE e.user = ?1 GROUP BY e.cardUsed")
+    @Query("SELECT e.cardId, SUM(e.amount) FROM Expense e WHERE e.user = ?1 GROUP BY e.cardId")
     List<Object[]> findExpenseSumByCard(User user);
+    
+    @Query("SELECT e.user.id, FUNCTION('YEAR', e.date), FUNCTION('MONTH', e.date), e.categoryId, e.subCategoryId, e.cardId, SUM(e.amount), COUNT(e) " +
+           "FROM Expense e WHERE e.user IS NOT NULL " +
+           "GROUP BY e.user.id, FUNCTION('YEAR', e.date), FUNCTION('MONTH', e.date), e.categoryId, e.subCategoryId, e.cardId")
+    List<Object[]> findRollupKeySums();
 }
@@ -0,0 +1,12 @@
+package com.example.expensetracker.repository;
+
+import com.example.expensetracker.model.Expense;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.stream.Stream;
+
+public interface ExpenseRepositoryCustom {
+
+    Stream<Expense> streamAll(Specification<Expense> spec, Sort sort);
+}
@@ -0,0 +1,50 @@
+package com.example.expensetracker.repository;
+
+import com.example.expensetracker.model.ExpenseRollup;
+import com.example.expensetracker.model.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ExpenseRollupRepository extends JpaRepository<ExpenseRollup, Long> {
+    
+    @Query("SELECT r.categoryId, SUM(r.total) FROM ExpenseRollup r WHERE r.user = ?1 GROUP BY r.categoryId")
+    List<Object[]> findExpenseSumByCategory(User user);
+    
+    @Query("SELECT r.categoryId, r.subCategoryId, SUM(r.total) FROM ExpenseRollup r WHERE r.user = ?1 GROUP BY r.categoryId, r.subCategoryId")
+    List<Object[]> findExpenseSumByCategoryAndSubCategory(User user);
+    
+    @Query("SELECT r.month, SUM(r.total) FROM ExpenseRollup r WHERE r.user = ?1 AND r.year = ?2 GROUP BY r.month")
+    List<Object[]> findMonthlyExpenseSumByYear(User user, int year);
+    
+    @Query("SELECT r.cardId, SUM(r.total) FROM ExpenseRollup r WHERE r.user = ?1 GROUP BY r.cardId")
+    List<Object[]> findExpenseSumByCard(User user);
+    
+    @Query("SELECT r.categoryId, r.cardId, r.year, r.month, SUM(r.total) FROM ExpenseRollup r WHERE r.user = ?1 " +
+           "GROUP BY r.categoryId, r.cardId, r.year, r.month")
+    List<Object[]> findDashboardSums(User user);
+    
+    @Query("SELECT r.user.id, r.year, r.month, r.categoryId, r.subCategoryId, r.cardId, SUM(r.total), SUM(r.expenseCount) " +
+           "FROM ExpenseRollup r GROUP BY r.user.id, r.year, r.month, r.categoryId, r.subCategoryId, r.cardId")
+    List<Object[]> findAllGrouped();
+    
+    @Modifying
+    @Query("DELETE FROM ExpenseRollup r WHERE r.user.id = ?1")
+    int deleteByUserId(Long userId);
+    
+    @Modifying
+    @Query("DELETE FROM ExpenseRollup r")
+    int deleteAllRollups();
+    
+    @Modifying
+    @Query(value = "INSERT INTO expense_rollups (user_id, expense_year, expense_month, category_id, sub_category_id, card_id, total, expense_count) " +
+                   "SELECT user_id, EXTRACT(YEAR FROM date), EXTRACT(MONTH FROM date), category_id, sub_category_id, card_id, SUM(amount), COUNT(*) " +
+                   "FROM expenses WHERE user_id IS NOT NULL " +
+                   "GROUP BY user_id, EXTRACT(YEAR FROM date), EXTRACT(MONTH FROM date), category_id, sub_category_id, card_id",
+           nativeQuery = true)
+    int rebuildFromExpenses();
+}
@@ -0,0 +1,89 @@
+package com.example.expensetracker.repository;
+
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.ExpenseSearchTerm;
+import com.example.expensetracker.model.User;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public final class ExpenseSpecifications {
+
+    // Label fields only hold ids in the table, so they sort by the joined label name
+    private static final Map<String, String> SORT_PATHS = Map.of(
+            "id", "id",
+            "name", "name",
+            "amount", "amount",
+            "date", "date",
+            "category", "categoryLabel.name",
+            "subCategory", "subCategoryLabel.name",
+            "location", "location",
+            "cardUsed", "cardLabel.name"
+    );
+
+    private ExpenseSpecifications() {
+    }
+
+    // categoryIds: null for no category filter, empty when no category of the user matched
+    public static Specification<Expense> search(User user, Collection<Integer> categoryIds, LocalDate startDate,
+                                                LocalDate endDate, BigDecimal minAmount,
+                                                BigDecimal maxAmount, String text) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.equal(root.get("user"), user));
+
+            if (categoryIds != null) {
+                predicates.add(categoryIds.isEmpty() ? cb.disjunction() : root.get("categoryId").in(categoryIds));
+            }
+
+            // Same as the previous in-memory filter: the range only applies when both ends are given
+            if (startDate != null && endDate != null) {
+                predicates.add(cb.between(root.get("date"), startDate, endDate));
+            }
+
+            if (minAmount != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("amount"), minAmount));
+            }
+
+            if (maxAmount != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("amount"), maxAmount));
+            }
+
+            // Each word must prefix-match a word of the name, location, category or sub category,
+            // one range scan of the search term index per word. Words need no LIKE escaping.
+            for (String word : SearchTerms.tokenize(text)) {
+                Subquery<Integer> matches = query.subquery(Integer.class);
+                Root<ExpenseSearchTerm> term = matches.from(ExpenseSearchTerm.class);
+                matches.select(cb.literal(1)).where(
+                        cb.equal(term.get("userId"), user.getId()),
+                        cb.like(term.get("term"), word + "%"),
+                        cb.equal(term.get("expenseId"), root.get("id")));
+                predicates.add(cb.exists(matches));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    public static Sort sortBy(String field, String direction) {
+        String path = field != null ? SORT_PATHS.get(field) : null;
+        if (path == null) {
+            return Sort.unsorted();
+        }
+        Sort.Direction dir = "desc".equalsIgnoreCase(direction) ? Sort.Direction.DESC : Sort.Direction.ASC;
+        if ("id".equals(field)) {
+            return Sort.by(dir, "id");
+        }
+        // Tie-break on id so equal keys come back in a stable order
+        return Sort.by(dir, path).and(Sort.by(dir, "id"));
+    }
+}
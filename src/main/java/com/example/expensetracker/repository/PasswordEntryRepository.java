@@ -2,17 +2,41 @@ package com.example.expensetracker.repository;
 
 import com.example.expensetracker.model.PasswordEntry;
 import com.example.expensetracker.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface PasswordEntryRepository extends JpaRepository<PasswordEntry, Long> {
+public interface PasswordEntryRepository extends JpaRepository<PasswordEntry, Long>, JpaSpecificationExecutor<PasswordEntry> {
     List<PasswordEntry> findByUser(User user);
-    List<PasswordEntry> findByUserOrderByNameAsc(User user);
-    List<PasswordEntry> findByUserOrderByUrlAsc(User user);
-    List<PasswordEntry> findByUserOrderByModifiedByAsc(User user);
-    List<PasswordEntry> findByUserOrderByDateCreatedAsc(User user);
-    List<PasswordEntry> findByUserOrderByDateLastModifiedAsc(User user);
+
+    List<PasswordEntry> findByUserIdAndIdIn(Long userId, Collection<Long> ids);
+
+    // Entries saved before the search index existed; paged by id since some have no terms to add
+    @Query("SELECT p FROM PasswordEntry p WHERE p.searchTerms IS EMPTY AND p.id > ?1 ORDER BY p.id")
+    List<PasswordEntry> findWithoutSearchTermsAfter(Long afterId, Pageable pageable);
+
+    // Entries still encrypted under the master password rather than the vault data key, as (id, encryptedPassword).
+    // Data-key ciphertexts start with a "k<version>:" prefix, which Base64 alone can never produce.
+    @Query("SELECT p.id, p.encryptedPassword FROM PasswordEntry p WHERE p.user.id = ?1 AND p.id > ?2 " +
+           "AND p.encryptedPassword NOT LIKE 'k_:%' ORDER BY p.id")
+    List<Object[]> findLegacyEncryptedAfter(Long userId, Long afterId, Pageable pageable);
+
+    @Query("SELECT COUNT(p) FROM PasswordEntry p WHERE p.user.id = ?1 AND p.id > ?2 " +
+           "AND p.encryptedPassword NOT LIKE 'k_:%'")
+    long countLegacyEncryptedAfter(Long userId, Long afterId);
+
+    // Swaps the ciphertext only if nobody changed it meanwhile; bypasses @PreUpdate as this isn't a user edit.
+    // Runs in its own transaction because decrypt workers call it outside one.
+    @Transactional
+    @Modifying
+    @Query("UPDATE PasswordEntry p SET p.encryptedPassword = ?3 WHERE p.id = ?1 AND p.encryptedPassword = ?2")
+    int replaceEncryptedPassword(Long id, String expected, String encryptedPassword);
 }
@@ -0,0 +1,64 @@
+package com.example.expensetracker.repository;
+
+import com.example.expensetracker.model.PasswordEntry;
+import com.example.expensetracker.model.User;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+public final class PasswordEntrySpecifications {
+
+    private static final Set<String> SORTABLE_FIELDS = Set.of(
+            "id", "name", "description", "url", "username", "email",
+            "modifiedBy", "dateCreated", "dateLastModified"
+    );
+
+    private PasswordEntrySpecifications() {
+    }
+
+    // Every word of the query must prefix-match a term of the entry, so each one is an index range scan.
+    // Words only contain letters and digits, so they need no LIKE escaping.
+    public static Specification<PasswordEntry> search(User user, String text) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.equal(root.get("user"), user));
+
+            for (String word : SearchTerms.tokenize(text)) {
+                Subquery<Integer> matches = query.subquery(Integer.class);
+                Root<PasswordEntry> entry = matches.correlate(root);
+                Join<PasswordEntry, String> term = entry.join("searchTerms");
+                matches.select(cb.literal(1)).where(cb.like(term, word + "%"));
+                predicates.add(cb.exists(matches));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    public static Sort sortBy(String field, String direction) {
+        Sort.Direction dir = "desc".equalsIgnoreCase(direction) ? Sort.Direction.DESC : Sort.Direction.ASC;
+        if (field == null || !SORTABLE_FIELDS.contains(field) || "id".equals(field)) {
+            return Sort.by(dir, "id");
+        }
+        // Tie-break on id so equal keys come back in a stable order across pages
+        return Sort.by(dir, field).and(Sort.by(dir, "id"));
+    }
+
+    public static Set<String> searchTerms(PasswordEntry entry) {
+        Set<String> terms = new LinkedHashSet<>();
+        terms.addAll(SearchTerms.tokenize(entry.getName()));
+        terms.addAll(SearchTerms.tokenize(entry.getUrl()));
+        terms.addAll(SearchTerms.tokenize(entry.getUsername()));
+        terms.addAll(SearchTerms.tokenize(entry.getEmail()));
+        terms.addAll(SearchTerms.tokenize(entry.getDescription()));
+        return terms;
+    }
+}
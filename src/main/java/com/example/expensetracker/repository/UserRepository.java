@@ -2,8 +2,10 @@ package com.example.expensetracker.repository;
 
 import com.example.expensetracker.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -16,4 +18,11 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByUsername(String username);
     
     boolean existsByEmail(String email);
+    
+    // Roles are EAGER, which findAll() would load with one extra select per user
+    @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.roles ORDER BY u.id")
+    List<User> findAllWithRoles();
+    
+    @Query("SELECT u.password FROM User u WHERE u.id = ?1")
+    Optional<String> findPasswordById(Long id);
 }
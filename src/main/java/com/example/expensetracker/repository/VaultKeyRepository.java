@@ -0,0 +1,19 @@
+package com.example.expensetracker.repository;
+
+import com.example.expensetracker.model.VaultKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface VaultKeyRepository extends JpaRepository<VaultKey, Long> {
+
+    Optional<VaultKey> findByUserId(Long userId);
+
+    @Modifying
+    @Query("DELETE FROM VaultKey k WHERE k.user.id = ?1")
+    int deleteByUserId(Long userId);
+}
@@ -0,0 +1,19 @@
+package com.example.expensetracker.repository;
+
+import com.example.expensetracker.model.VaultMigration;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface VaultMigrationRepository extends JpaRepository<VaultMigration, Long> {
+
+    Optional<VaultMigration> findByUserId(Long userId);
+
+    @Modifying
+    @Query("DELETE FROM VaultMigration m WHERE m.user.id = ?1")
+    int deleteByUserId(Long userId);
+}
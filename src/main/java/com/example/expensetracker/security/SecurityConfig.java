@@ -1,5 +1,9 @@
 package com.example.expensetracker.security;
 
+import com.example.expensetracker.service.ApiTokenService;
+import com.example.expensetracker.service.VaultService;
+import jakarta.servlet.http.HttpSession;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -13,6 +17,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 @Configuration
 @EnableWebSecurity
@@ -21,13 +26,17 @@ import org.springframework.security.web.SecurityFilterChain;
 public class SecurityConfig {
 
     private final UserDetailsServiceImpl userDetailsService;
+    private final ApiTokenService apiTokenService;
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, VaultService vaultService) throws Exception {
         http
             .csrf(AbstractHttpConfigurer::disable)
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/", "/login", "/register", "/css/**", "/js/**", "/h2-console/**").permitAll()
+                .requestMatchers("/actuator/health").permitAll()
+                // Scrape with an admin API token: Authorization: Bearer et_...
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                 .requestMatchers("/admin/**").hasRole("ADMIN")
                 .requestMatchers("/passwords/change-password").hasRole("ADMIN")
                 .requestMatchers("/passwords/**").authenticated()
@@ -39,10 +48,19 @@ public class SecurityConfig {
                 .permitAll()
             )
             .logout(logout -> logout
+                // Runs before the session is invalidated, so the unlocked data key is zeroed right away
+                .addLogoutHandler((request, response, authentication) -> {
+                    HttpSession session = request.getSession(false);
+                    if (session != null && authentication != null
+                            && authentication.getPrincipal() instanceof AuthenticatedUser principal) {
+                        vaultService.lock(principal.getId(), session.getId());
+                    }
+                })
                 .logoutSuccessUrl("/login?logout")
                 .permitAll()
             )
             .httpBasic(httpBasic -> {})
+            .addFilterBefore(new ApiTokenAuthenticationFilter(apiTokenService), BasicAuthenticationFilter.class)
             .userDetailsService(userDetailsService)
             .headers(headers -> headers.frameOptions().sameOrigin()); // For H2 console
 
@@ -50,8 +68,8 @@ public class SecurityConfig {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        return new TimedPasswordEncoder(new BCryptPasswordEncoder(), meterRegistry);
     }
 
     @Bean
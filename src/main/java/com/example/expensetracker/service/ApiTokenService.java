@@ -0,0 +1,136 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.model.ApiToken;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.repository.ApiTokenRepository;
+import com.example.expensetracker.repository.UserRepository;
+import com.example.expensetracker.security.AuthenticatedUser;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Long-lived API tokens for scripted clients. Tokens are random, so a single SHA-256 is enough
+ * to store them safely and verifying one costs a hash plus, on a cache miss, one indexed lookup.
+ */
+@Service
+public class ApiTokenService {
+
+    public static final String TOKEN_PREFIX = "et_";
+    private static final int TOKEN_BYTES = 32;
+
+    private final ApiTokenRepository apiTokenRepository;
+    private final UserRepository userRepository;
+    private final Duration defaultValidity;
+    private final Cache<String, CachedToken> cache;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    public ApiTokenService(ApiTokenRepository apiTokenRepository,
+                           UserRepository userRepository,
+                           @Value("${api.tokens.validity:30d}") String defaultValidity,
+                           @Value("${api.tokens.cache.max-size:10000}") long cacheMaxSize,
+                           @Value("${api.tokens.cache.ttl:5m}") String cacheTtl) {
+        this.apiTokenRepository = apiTokenRepository;
+        this.userRepository = userRepository;
+        this.defaultValidity = DurationStyle.detectAndParse(defaultValidity);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(DurationStyle.detectAndParse(cacheTtl))
+                .build();
+    }
+
+    @Transactional
+    public IssuedApiToken issueToken(Long userId, String name, Duration validity) {
+        byte[] random = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(random);
+        String plainToken = TOKEN_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(random);
+
+        ApiToken token = new ApiToken();
+        token.setName(name);
+        token.setTokenHash(hash(plainToken));
+        token.setExpiresAt(LocalDateTime.now().plus(validity != null ? validity : defaultValidity));
+        token.setUser(userRepository.getReferenceById(userId));
+        return new IssuedApiToken(apiTokenRepository.save(token), plainToken);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<AuthenticatedUser> authenticate(String plainToken) {
+        if (plainToken == null || !plainToken.startsWith(TOKEN_PREFIX)) {
+            return Optional.empty();
+        }
+
+        String tokenHash = hash(plainToken);
+        CachedToken cached = cache.getIfPresent(tokenHash);
+        if (cached == null) {
+            cached = apiTokenRepository.findByTokenHash(tokenHash)
+                    .filter(token -> !token.isRevoked())
+                    .map(token -> {
+                        User user = token.getUser();
+                        return new CachedToken(new AuthenticatedUser(
+                                user.getId(), user.getUsername(), null, user.getRoles()), token.getExpiresAt());
+                    })
+                    .orElse(null);
+            if (cached == null) {
+                return Optional.empty();
+            }
+            cache.put(tokenHash, cached);
+        }
+
+        if (cached.expiresAt().isBefore(LocalDateTime.now())) {
+            cache.invalidate(tokenHash);
+            return Optional.empty();
+        }
+        return Optional.of(cached.principal());
+    }
+
+    public List<ApiToken> getTokens(Long userId) {
+        return apiTokenRepository.findByUserIdOrderByCreatedAtDesc(userId);
+    }
+
+    @Transactional
+    public void revokeToken(Long userId, Long tokenId) {
+        ApiToken token = apiTokenRepository.findById(tokenId)
+                .orElseThrow(() -> new IllegalArgumentException("API token not found"));
+        if (!token.getUser().getId().equals(userId)) {
+            throw new IllegalArgumentException("API token not found");
+        }
+        token.setRevoked(true);
+        apiTokenRepository.save(token);
+        cache.invalidate(token.getTokenHash());
+    }
+
+    @Transactional
+    public void deleteTokensForUser(Long userId) {
+        apiTokenRepository.deleteByUserId(userId);
+        cache.asMap().values().removeIf(cached -> cached.principal().getId().equals(userId));
+    }
+
+    private static String hash(String plainToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(plainToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public record IssuedApiToken(ApiToken token, String plainToken) {
+    }
+
+    private record CachedToken(AuthenticatedUser principal, LocalDateTime expiresAt) {
+    }
+}
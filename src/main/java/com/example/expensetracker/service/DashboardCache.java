@@ -0,0 +1,69 @@
+package com.example.expensetracker.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * Caches dashboard aggregates, one entry per user and aggregate, so the size bound and the TTL apply
+ * to every aggregate on its own. An expense write drops all entries of that user.
+ */
+@Component
+public class DashboardCache {
+
+    private final Cache<AggregateKey, Object> cache;
+
+    public DashboardCache(@Value("${dashboard.cache.max-entries:50000}") long maxEntries,
+                          @Value("${dashboard.cache.ttl:10m}") String ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(DurationStyle.detectAndParse(ttl))
+                .recordStats()
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(Long userId, String key, Supplier<T> loader) {
+        return (T) cache.get(new AggregateKey(userId, key), aggregateKey -> loader.get());
+    }
+
+    // Scans the keys; the cache is bounded, and writes are far rarer than dashboard reads
+    public void invalidate(Long userId) {
+        cache.asMap().keySet().removeIf(key -> key.userId().equals(userId));
+    }
+
+    // Drop now and again after commit, so a read that ran before the commit can't leave stale data behind
+    public void invalidateAfterCommit(Long userId) {
+        invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(userId);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public Stats stats() {
+        CacheStats stats = cache.stats();
+        return new Stats(stats.hitCount(), stats.missCount(), stats.evictionCount(), cache.estimatedSize());
+    }
+
+    public record Stats(long hits, long misses, long evictions, long cachedAggregates) {
+    }
+
+    private record AggregateKey(Long userId, String key) {
+    }
+}
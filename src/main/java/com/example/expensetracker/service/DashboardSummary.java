@@ -0,0 +1,11 @@
+package com.example.expensetracker.service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+public record DashboardSummary(int year,
+                               BigDecimal totalExpenses,
+                               Map<String, BigDecimal> categoryExpenses,
+                               Map<Integer, BigDecimal> monthlyExpenses,
+                               Map<String, BigDecimal> cardExpenses) {
+}
@@ -1,18 +1,32 @@
 package com.example.expensetracker.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
 import java.security.spec.KeySpec;
 import java.util.Base64;
 
+/**
+ * Stored ciphertext formats, told apart by their prefix:
+ * <ul>
+ *   <li>none: Base64(salt || iv || AES-CBC), keyed by PBKDF2 of the master password (pre-vault entries)</li>
+ *   <li>{@code k1:} Base64(iv || AES-CBC) under the vault data key</li>
+ *   <li>{@code k2:} Base64(iv || AES-GCM with tag) under the vault data key, the format written today</li>
+ * </ul>
+ * Cipher, key factory and SecureRandom instances are costly to look up and not thread-safe, so each
+ * thread keeps its own and re-initialises them per call.
+ */
 @Service
 public class EncryptionService {
 
@@ -22,63 +36,192 @@ public class EncryptionService {
     private static final int KEY_LENGTH = 256;
     private static final int ITERATION_COUNT = 65536;
     private static final int IV_LENGTH = 16;
+    private static final int SALT_LENGTH = 16;
+
+    public static final String DATA_KEY_CBC_PREFIX = "k1:";
+    public static final String DATA_KEY_GCM_PREFIX = "k2:";
+    private static final int DATA_KEY_LENGTH = 32;
+    private static final String GCM_ALGORITHM = "AES/GCM/NoPadding";
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_LENGTH = 128;
+
+    private static final ThreadLocal<Cipher> CBC_CIPHER = ThreadLocal.withInitial(() -> cipher(ALGORITHM));
+    private static final ThreadLocal<Cipher> GCM_CIPHER = ThreadLocal.withInitial(() -> cipher(GCM_ALGORITHM));
+    private static final ThreadLocal<SecretKeyFactory> KEY_FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance(SECRET_KEY_FACTORY_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(SECRET_KEY_FACTORY_ALGORITHM + " not available", e);
+        }
+    });
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+
+    private final Timer keyDerivationTimer;
+    private final Timer cbcTimer;
+    private final Timer gcmTimer;
+
+    public EncryptionService(MeterRegistry meterRegistry) {
+        this.keyDerivationTimer = Timer.builder("encryption.key.derivation")
+                .tag("algorithm", SECRET_KEY_FACTORY_ALGORITHM)
+                .register(meterRegistry);
+        this.cbcTimer = Timer.builder("encryption.cipher")
+                .tag("algorithm", ALGORITHM)
+                .register(meterRegistry);
+        this.gcmTimer = Timer.builder("encryption.cipher")
+                .tag("algorithm", GCM_ALGORITHM)
+                .register(meterRegistry);
+    }
 
     public String encrypt(String plainText, String masterPassword) throws Exception {
-        byte[] salt = generateSalt();
+        byte[] salt = randomBytes(SALT_LENGTH);
         SecretKey key = deriveKey(masterPassword, salt);
-        
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
-        byte[] iv = generateIV();
-        IvParameterSpec ivSpec = new IvParameterSpec(iv);
-        cipher.init(Cipher.ENCRYPT_MODE, key, ivSpec);
-        
-        byte[] encrypted = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
-        
-        byte[] combined = new byte[salt.length + iv.length + encrypted.length];
-        System.arraycopy(salt, 0, combined, 0, salt.length);
-        System.arraycopy(iv, 0, combined, salt.length, iv.length);
-        System.arraycopy(encrypted, 0, combined, salt.length + iv.length, encrypted.length);
-        
-        return Base64.getEncoder().encodeToString(combined);
+
+        Cipher cipher = CBC_CIPHER.get();
+        byte[] iv = randomBytes(IV_LENGTH);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
+
+        byte[] encrypted = cbcTimer.recordCallable(() -> cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8)));
+
+        return Base64.getEncoder().encodeToString(concat(salt, iv, encrypted));
     }
 
     public String decrypt(String encryptedText, String masterPassword) throws Exception {
         byte[] combined = Base64.getDecoder().decode(encryptedText);
-        
-        byte[] salt = new byte[16];
+
+        byte[] salt = new byte[SALT_LENGTH];
         byte[] iv = new byte[IV_LENGTH];
         byte[] encrypted = new byte[combined.length - salt.length - iv.length];
-        
+
         System.arraycopy(combined, 0, salt, 0, salt.length);
         System.arraycopy(combined, salt.length, iv, 0, iv.length);
         System.arraycopy(combined, salt.length + iv.length, encrypted, 0, encrypted.length);
-        
+
         SecretKey key = deriveKey(masterPassword, salt);
-        
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
-        IvParameterSpec ivSpec = new IvParameterSpec(iv);
-        cipher.init(Cipher.DECRYPT_MODE, key, ivSpec);
-        
-        byte[] decrypted = cipher.doFinal(encrypted);
+
+        Cipher cipher = CBC_CIPHER.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
+
+        byte[] decrypted = cbcTimer.recordCallable(() -> cipher.doFinal(encrypted));
         return new String(decrypted, StandardCharsets.UTF_8);
     }
 
+    public byte[] generateDataKey() {
+        return randomBytes(DATA_KEY_LENGTH);
+    }
+
+    // GCM so a wrong master password fails to unwrap instead of yielding a garbage key
+    public String wrapDataKey(byte[] dataKey, String masterPassword) throws Exception {
+        byte[] salt = randomBytes(SALT_LENGTH);
+        SecretKey key = deriveKey(masterPassword, salt);
+
+        byte[] iv = randomBytes(GCM_IV_LENGTH);
+        Cipher cipher = GCM_CIPHER.get();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+        byte[] wrapped = gcmTimer.recordCallable(() -> cipher.doFinal(dataKey));
+
+        return Base64.getEncoder().encodeToString(concat(salt, iv, wrapped));
+    }
+
+    public byte[] unwrapDataKey(String wrappedKey, String masterPassword) throws Exception {
+        byte[] combined = Base64.getDecoder().decode(wrappedKey);
+
+        byte[] salt = new byte[SALT_LENGTH];
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        byte[] wrapped = new byte[combined.length - salt.length - iv.length];
+
+        System.arraycopy(combined, 0, salt, 0, salt.length);
+        System.arraycopy(combined, salt.length, iv, 0, iv.length);
+        System.arraycopy(combined, salt.length + iv.length, wrapped, 0, wrapped.length);
+
+        SecretKey key = deriveKey(masterPassword, salt);
+
+        Cipher cipher = GCM_CIPHER.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+        return gcmTimer.recordCallable(() -> cipher.doFinal(wrapped));
+    }
+
+    // One AES-GCM operation, no key derivation
+    public String encryptWithDataKey(String plainText, byte[] dataKey) throws Exception {
+        byte[] iv = randomBytes(GCM_IV_LENGTH);
+        Cipher cipher = GCM_CIPHER.get();
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(dataKey, KEY_ALGORITHM),
+                new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+
+        byte[] encrypted = gcmTimer.recordCallable(() -> cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8)));
+
+        return DATA_KEY_GCM_PREFIX + Base64.getEncoder().encodeToString(concat(iv, encrypted));
+    }
+
+    public String decryptWithDataKey(String encryptedText, byte[] dataKey) throws Exception {
+        boolean gcm = encryptedText != null && encryptedText.startsWith(DATA_KEY_GCM_PREFIX);
+        if (!gcm && !usesDataKey(encryptedText)) {
+            throw new IllegalArgumentException("Password is not encrypted with the vault key");
+        }
+        // Both prefixes have the same length
+        byte[] combined = Base64.getDecoder().decode(encryptedText.substring(DATA_KEY_GCM_PREFIX.length()));
+
+        int ivLength = gcm ? GCM_IV_LENGTH : IV_LENGTH;
+        byte[] iv = new byte[ivLength];
+        byte[] encrypted = new byte[combined.length - ivLength];
+
+        System.arraycopy(combined, 0, iv, 0, ivLength);
+        System.arraycopy(combined, ivLength, encrypted, 0, encrypted.length);
+
+        SecretKeySpec key = new SecretKeySpec(dataKey, KEY_ALGORITHM);
+        Cipher cipher;
+        if (gcm) {
+            cipher = GCM_CIPHER.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+        } else {
+            cipher = CBC_CIPHER.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
+        }
+
+        byte[] decrypted = (gcm ? gcmTimer : cbcTimer).recordCallable(() -> cipher.doFinal(encrypted));
+        return new String(decrypted, StandardCharsets.UTF_8);
+    }
+
+    public boolean usesDataKey(String encryptedText) {
+        return encryptedText != null
+                && (encryptedText.startsWith(DATA_KEY_GCM_PREFIX) || encryptedText.startsWith(DATA_KEY_CBC_PREFIX));
+    }
+
+    // Data-key ciphertexts written before GCM; rewritten in the current format when next read
+    public boolean needsUpgrade(String encryptedText) {
+        return encryptedText != null && encryptedText.startsWith(DATA_KEY_CBC_PREFIX);
+    }
+
     private SecretKey deriveKey(String password, byte[] salt) throws Exception {
-        SecretKeyFactory factory = SecretKeyFactory.getInstance(SECRET_KEY_FACTORY_ALGORITHM);
         KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, ITERATION_COUNT, KEY_LENGTH);
-        SecretKey tmp = factory.generateSecret(spec);
+        SecretKey tmp = keyDerivationTimer.recordCallable(() -> KEY_FACTORY.get().generateSecret(spec));
         return new SecretKeySpec(tmp.getEncoded(), KEY_ALGORITHM);
     }
 
-    private byte[] generateSalt() {
-        byte[] salt = new byte[16];
-        new SecureRandom().nextBytes(salt);
-        return salt;
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        RANDOM.get().nextBytes(bytes);
+        return bytes;
     }
 
-    private byte[] generateIV() {
-        byte[] iv = new byte[IV_LENGTH];
-        new SecureRandom().nextBytes(iv);
-        return iv;
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] combined = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, combined, offset, part.length);
+            offset += part.length;
+        }
+        return combined;
+    }
+
+    private static Cipher cipher(String transformation) {
+        try {
+            return Cipher.getInstance(transformation);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(transformation + " not available", e);
+        }
     }
 }
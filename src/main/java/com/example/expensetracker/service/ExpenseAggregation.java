@@ -0,0 +1,19 @@
+package com.example.expensetracker.service;
+
+import java.math.BigDecimal;
+
+// Result of ExpenseAnalyticsEngine.aggregate: cents and row count per group key
+public record ExpenseAggregation(ExpenseColumns columns, long[] cents, long[] counts) {
+
+    public int size() {
+        return cents.length;
+    }
+
+    public boolean isEmpty(int key) {
+        return counts[key] == 0;
+    }
+
+    public BigDecimal amount(int key) {
+        return ExpenseColumns.toAmount(cents[key]);
+    }
+}
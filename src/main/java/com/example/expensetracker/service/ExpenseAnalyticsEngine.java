@@ -0,0 +1,111 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.model.Expense;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Optional in-memory analytics over {@link ExpenseColumns}. A user's columns are loaded on first use,
+ * kept up to date by expense writes once they commit, and evicted when the columns of all users
+ * together exceed the memory budget. Off by default; ExpenseService falls back to the rollup table.
+ */
+@Slf4j
+@Service
+public class ExpenseAnalyticsEngine {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final Cache<Long, ExpenseColumns> columns;
+
+    public ExpenseAnalyticsEngine(JdbcTemplate jdbcTemplate,
+                                  @Value("${expenses.analytics.enabled:false}") boolean enabled,
+                                  @Value("${expenses.analytics.max-memory:64MB}") String maxMemory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.columns = Caffeine.newBuilder()
+                .maximumWeight(DataSize.parse(maxMemory).toBytes())
+                .weigher((Long userId, ExpenseColumns userColumns) ->
+                        (int) Math.min(Integer.MAX_VALUE, userColumns.estimatedBytes()))
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ExpenseColumns columns(Long userId) {
+        return columns.get(userId, this::load);
+    }
+
+    public ExpenseAggregation aggregate(Long userId, ExpenseColumns.Filter filter, ExpenseColumns.Grouping grouping) {
+        return columns(userId).aggregate(filter, grouping);
+    }
+
+    // Expects the expense's label ids to be set, i.e. after ExpenseLabelDictionary.encode
+    public void recordSaveAfterCommit(Long userId, Expense expense) {
+        if (!enabled) {
+            return;
+        }
+        long id = expense.getId();
+        int epochDay = (int) expense.getDate().toEpochDay();
+        long cents = ExpenseColumns.toCents(expense.getAmount());
+        Integer categoryId = expense.getCategoryId();
+        Integer subCategoryId = expense.getSubCategoryId();
+        Integer cardId = expense.getCardId();
+        afterCommit(userId, userColumns -> userColumns.upsert(id, epochDay, cents, categoryId, subCategoryId, cardId));
+    }
+
+    public void recordDeleteAfterCommit(Long userId, Long expenseId) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(userId, userColumns -> userColumns.remove(expenseId));
+    }
+
+    // For bulk writes: the user's columns are reloaded on next use
+    public void invalidateAfterCommit(Long userId) {
+        if (!enabled) {
+            return;
+        }
+        columns.invalidate(userId);
+        afterCommit(userId, userColumns -> null);
+    }
+
+    // Columns that aren't loaded are left alone; a later load reads the committed rows.
+    // A load running concurrently finishes before the change is applied to its result.
+    private void afterCommit(Long userId, UnaryOperator<ExpenseColumns> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            columns.asMap().computeIfPresent(userId, (id, userColumns) -> change.apply(userColumns));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                columns.asMap().computeIfPresent(userId, (id, userColumns) -> change.apply(userColumns));
+            }
+        });
+    }
+
+    private ExpenseColumns load(Long userId) {
+        ExpenseColumns.Builder builder = new ExpenseColumns.Builder();
+        jdbcTemplate.query("SELECT id, date, amount, category_id, sub_category_id, card_id FROM expenses "
+                        + "WHERE user_id = ? ORDER BY id",
+                rs -> {
+                    builder.add(rs.getLong(1), (int) rs.getDate(2).toLocalDate().toEpochDay(),
+                            ExpenseColumns.toCents(rs.getBigDecimal(3)), rs.getInt(4), rs.getInt(5), rs.getInt(6));
+                },
+                userId);
+        ExpenseColumns loaded = builder.build();
+        log.debug("Loaded {} expenses of user {} into analytics columns", loaded.size(), userId);
+        return loaded;
+    }
+}
@@ -0,0 +1,373 @@
+package com.example.expensetracker.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One user's expenses as primitive columns, sorted by expense id: epoch day, amount in cents, and
+ * category, sub category and card as small per-user codes into a table of label ids, where code 0
+ * means no label. Instances never change; a write returns a copy, so readers scan without locking.
+ */
+public final class ExpenseColumns {
+
+    public static final int NO_LABEL = 0;
+
+    private final long[] ids;
+    private final int[] epochDays;
+    private final long[] cents;
+    private final int[] categories;
+    private final int[] subCategories;
+    private final int[] cards;
+    private final int size;
+    // Code -> label id; index 0 is NO_LABEL
+    private final int[] labelIds;
+
+    private ExpenseColumns(long[] ids, int[] epochDays, long[] cents, int[] categories, int[] subCategories,
+                           int[] cards, int size, int[] labelIds) {
+        this.ids = ids;
+        this.epochDays = epochDays;
+        this.cents = cents;
+        this.categories = categories;
+        this.subCategories = subCategories;
+        this.cards = cards;
+        this.size = size;
+        this.labelIds = labelIds;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int epochDay(int row) {
+        return epochDays[row];
+    }
+
+    public long cents(int row) {
+        return cents[row];
+    }
+
+    public int category(int row) {
+        return categories[row];
+    }
+
+    public int subCategory(int row) {
+        return subCategories[row];
+    }
+
+    public int card(int row) {
+        return cards[row];
+    }
+
+    // Codes run from 0 to labelCount() - 1
+    public int labelCount() {
+        return labelIds.length;
+    }
+
+    public Integer labelId(int code) {
+        return code == NO_LABEL ? null : labelIds[code];
+    }
+
+    /**
+     * Adds the cents and count of every row the filter accepts to sums[key] and counts[key], where
+     * key comes from the grouping. Both arrays need grouping.size(this) entries. Nothing is allocated.
+     */
+    public void aggregate(Filter filter, Grouping grouping, long[] sums, long[] counts) {
+        for (int row = 0; row < size; row++) {
+            if (filter.test(this, row)) {
+                int key = grouping.key(this, row);
+                if (key >= 0) {
+                    sums[key] += cents[row];
+                    counts[key]++;
+                }
+            }
+        }
+    }
+
+    public ExpenseAggregation aggregate(Filter filter, Grouping grouping) {
+        int keys = grouping.size(this);
+        long[] sums = new long[keys];
+        long[] counts = new long[keys];
+        aggregate(filter, grouping, sums, counts);
+        return new ExpenseAggregation(this, sums, counts);
+    }
+
+    // Copies the columns; fine for one write, use a Builder for many
+    public ExpenseColumns upsert(long id, int epochDay, long amountCents, Integer categoryId, Integer subCategoryId,
+                                 Integer cardId) {
+        int[] labels = labelIds;
+        int category = code(labels, categoryId);
+        if (category < 0) {
+            labels = append(labels, categoryId);
+            category = labels.length - 1;
+        }
+        int subCategory = code(labels, subCategoryId);
+        if (subCategory < 0) {
+            labels = append(labels, subCategoryId);
+            subCategory = labels.length - 1;
+        }
+        int card = code(labels, cardId);
+        if (card < 0) {
+            labels = append(labels, cardId);
+            card = labels.length - 1;
+        }
+
+        int row = Arrays.binarySearch(ids, 0, size, id);
+        int newSize = row >= 0 ? size : size + 1;
+        if (row < 0) {
+            row = -row - 1;
+        }
+        long[] newIds = insertGap(ids, row, newSize);
+        int[] newEpochDays = insertGap(epochDays, row, newSize);
+        long[] newCents = insertGap(cents, row, newSize);
+        int[] newCategories = insertGap(categories, row, newSize);
+        int[] newSubCategories = insertGap(subCategories, row, newSize);
+        int[] newCards = insertGap(cards, row, newSize);
+        newIds[row] = id;
+        newEpochDays[row] = epochDay;
+        newCents[row] = amountCents;
+        newCategories[row] = category;
+        newSubCategories[row] = subCategory;
+        newCards[row] = card;
+        return new ExpenseColumns(newIds, newEpochDays, newCents, newCategories, newSubCategories, newCards,
+                newSize, labels);
+    }
+
+    public ExpenseColumns remove(long id) {
+        int row = Arrays.binarySearch(ids, 0, size, id);
+        if (row < 0) {
+            return this;
+        }
+        return new ExpenseColumns(removeAt(ids, row), removeAt(epochDays, row), removeAt(cents, row),
+                removeAt(categories, row), removeAt(subCategories, row), removeAt(cards, row), size - 1, labelIds);
+    }
+
+    public long estimatedBytes() {
+        // Six arrays with headers, plus the label table and this object
+        return 6 * 16L + (long) size * (8 + 4 + 8 + 4 + 4 + 4) + 16L + labelIds.length * 4L + 48;
+    }
+
+    // Amounts are stored with two decimals, as in the expenses table
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toAmount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    // year * 12 + (month - 1) of an epoch day, computed without LocalDate (H. Hinnant's civil_from_days)
+    public static int epochMonth(int epochDay) {
+        int z = epochDay + 719_468;
+        int era = Math.floorDiv(z, 146_097);
+        int dayOfEra = z - era * 146_097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1_460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + month - 1;
+    }
+
+    private static int code(int[] labels, Integer labelId) {
+        if (labelId == null) {
+            return NO_LABEL;
+        }
+        for (int code = 1; code < labels.length; code++) {
+            if (labels[code] == labelId) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] append(int[] labels, int labelId) {
+        int[] grown = Arrays.copyOf(labels, labels.length + 1);
+        grown[labels.length] = labelId;
+        return grown;
+    }
+
+    // Copy of the first size entries with room at row when newSize is one larger
+    private long[] insertGap(long[] column, int row, int newSize) {
+        long[] copy = new long[newSize];
+        System.arraycopy(column, 0, copy, 0, row);
+        int shift = newSize - size;
+        System.arraycopy(column, row + 1 - shift, copy, row + 1, size - row - 1 + shift);
+        return copy;
+    }
+
+    private int[] insertGap(int[] column, int row, int newSize) {
+        int[] copy = new int[newSize];
+        System.arraycopy(column, 0, copy, 0, row);
+        int shift = newSize - size;
+        System.arraycopy(column, row + 1 - shift, copy, row + 1, size - row - 1 + shift);
+        return copy;
+    }
+
+    private long[] removeAt(long[] column, int row) {
+        long[] copy = new long[size - 1];
+        System.arraycopy(column, 0, copy, 0, row);
+        System.arraycopy(column, row + 1, copy, row, size - row - 1);
+        return copy;
+    }
+
+    private int[] removeAt(int[] column, int row) {
+        int[] copy = new int[size - 1];
+        System.arraycopy(column, 0, copy, 0, row);
+        System.arraycopy(column, row + 1, copy, row, size - row - 1);
+        return copy;
+    }
+
+    /** Row predicate for {@link #aggregate}. Read the row through the column accessors; don't allocate. */
+    @FunctionalInterface
+    public interface Filter {
+
+        Filter ALL = (columns, row) -> true;
+
+        boolean test(ExpenseColumns columns, int row);
+
+        // from inclusive, to exclusive
+        static Filter between(LocalDate from, LocalDate to) {
+            int fromDay = (int) from.toEpochDay();
+            int toDay = (int) to.toEpochDay();
+            return (columns, row) -> columns.epochDay(row) >= fromDay && columns.epochDay(row) < toDay;
+        }
+
+        default Filter and(Filter other) {
+            return (columns, row) -> test(columns, row) && other.test(columns, row);
+        }
+    }
+
+    /**
+     * Maps a row to a group key from 0 to size(columns) - 1, or -1 to leave the row out.
+     * Keys are computed from the columns alone; don't allocate.
+     */
+    public interface Grouping {
+
+        int size(ExpenseColumns columns);
+
+        int key(ExpenseColumns columns, int row);
+
+        // Key is this key * next.size() + next key
+        default Grouping then(Grouping next) {
+            Grouping first = this;
+            return new Grouping() {
+                @Override
+                public int size(ExpenseColumns columns) {
+                    return first.size(columns) * next.size(columns);
+                }
+
+                @Override
+                public int key(ExpenseColumns columns, int row) {
+                    int outer = first.key(columns, row);
+                    int inner = next.key(columns, row);
+                    return outer < 0 || inner < 0 ? -1 : outer * next.size(columns) + inner;
+                }
+            };
+        }
+    }
+
+    public enum Dimension implements Grouping {
+        TOTAL {
+            @Override
+            public int size(ExpenseColumns columns) {
+                return 1;
+            }
+
+            @Override
+            public int key(ExpenseColumns columns, int row) {
+                return 0;
+            }
+        },
+        // Label dimensions are keyed by code; see labelId
+        CATEGORY {
+            @Override
+            public int key(ExpenseColumns columns, int row) {
+                return columns.category(row);
+            }
+        },
+        SUB_CATEGORY {
+            @Override
+            public int key(ExpenseColumns columns, int row) {
+                return columns.subCategory(row);
+            }
+        },
+        CARD {
+            @Override
+            public int key(ExpenseColumns columns, int row) {
+                return columns.card(row);
+            }
+        },
+        // Keys 0 to 11 for January to December
+        MONTH_OF_YEAR {
+            @Override
+            public int size(ExpenseColumns columns) {
+                return 12;
+            }
+
+            @Override
+            public int key(ExpenseColumns columns, int row) {
+                return epochMonth(columns.epochDay(row)) % 12;
+            }
+        };
+
+        @Override
+        public int size(ExpenseColumns columns) {
+            return columns.labelCount();
+        }
+    }
+
+    /** Collects rows in ascending id order, e.g. straight from a query ordered by id. */
+    public static final class Builder {
+
+        private long[] ids = new long[64];
+        private int[] epochDays = new int[64];
+        private long[] cents = new long[64];
+        private int[] categories = new int[64];
+        private int[] subCategories = new int[64];
+        private int[] cards = new int[64];
+        private int size;
+        private int[] labelIds = new int[]{0};
+        private final Map<Integer, Integer> codes = new HashMap<>();
+
+        // Label id 0 means no label, matching a NULL read with ResultSet.getInt
+        public Builder add(long id, int epochDay, long amountCents, int categoryId, int subCategoryId, int cardId) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                epochDays = Arrays.copyOf(epochDays, capacity);
+                cents = Arrays.copyOf(cents, capacity);
+                categories = Arrays.copyOf(categories, capacity);
+                subCategories = Arrays.copyOf(subCategories, capacity);
+                cards = Arrays.copyOf(cards, capacity);
+            }
+            ids[size] = id;
+            epochDays[size] = epochDay;
+            cents[size] = amountCents;
+            categories[size] = code(categoryId);
+            subCategories[size] = code(subCategoryId);
+            cards[size] = code(cardId);
+            size++;
+            return this;
+        }
+
+        public ExpenseColumns build() {
+            return new ExpenseColumns(Arrays.copyOf(ids, size), Arrays.copyOf(epochDays, size),
+                    Arrays.copyOf(cents, size), Arrays.copyOf(categories, size), Arrays.copyOf(subCategories, size),
+                    Arrays.copyOf(cards, size), size, labelIds);
+        }
+
+        private int code(int labelId) {
+            if (labelId == 0) {
+                return NO_LABEL;
+            }
+            return codes.computeIfAbsent(labelId, id -> {
+                labelIds = append(labelIds, id);
+                return labelIds.length - 1;
+            });
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.model.Expense;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * Position in the (date DESC, id DESC) ordering of a user's expenses.
+ * Clients only ever see the encoded form, so the layout can change without breaking them.
+ */
+public record ExpenseCursor(LocalDate date, Long id) {
+
+    private static final String SEPARATOR = ":";
+
+    public static ExpenseCursor of(Expense expense) {
+        return new ExpenseCursor(expense.getDate(), expense.getId());
+    }
+
+    public String encode() {
+        String raw = date.toEpochDay() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ExpenseCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int split = raw.indexOf(SEPARATOR);
+            if (split < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            LocalDate date = LocalDate.ofEpochDay(Long.parseLong(raw.substring(0, split)));
+            Long id = Long.valueOf(raw.substring(split + 1));
+            return new ExpenseCursor(date, id);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
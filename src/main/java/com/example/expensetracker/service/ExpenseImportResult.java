@@ -0,0 +1,21 @@
+package com.example.expensetracker.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public record ExpenseImportResult(long rowsRead,
+                                  long rowsImported,
+                                  long errorCount,
+                                  List<RowError> errors,
+                                  long elapsedMillis) {
+
+    // Not a record component, so Jackson needs to be told to write it
+    @JsonProperty("rowsPerSecond")
+    public double rowsPerSecond() {
+        return elapsedMillis > 0 ? rowsImported * 1000.0 / elapsedMillis : rowsImported;
+    }
+
+    public record RowError(long row, String message) {
+    }
+}
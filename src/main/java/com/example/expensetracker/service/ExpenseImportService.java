@@ -0,0 +1,311 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.repository.ExpenseRepository;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+public class ExpenseImportService {
+
+    private static final CSVFormat IMPORT_FORMAT = CSVFormat.DEFAULT.builder()
+            .setHeader()
+            .setSkipHeaderRecord(true)
+            .setIgnoreHeaderCase(true)
+            .setTrim(true)
+            .build();
+
+    private final ExpenseRepository expenseRepository;
+    private final ExpenseRollupService expenseRollupService;
+    private final ExpenseSearchIndex expenseSearchIndex;
+    private final ExpenseLabelDictionary expenseLabelDictionary;
+    private final ExpenseAnalyticsEngine expenseAnalyticsEngine;
+    private final DashboardCache dashboardCache;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${expenses.import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${expenses.import.max-reported-errors:500}")
+    private int maxReportedErrors;
+
+    @Value("${expenses.ingest.chunk-size:500}")
+    private int ingestChunkSize;
+
+    public ExpenseImportService(ExpenseRepository expenseRepository,
+                                ExpenseRollupService expenseRollupService,
+                                ExpenseSearchIndex expenseSearchIndex,
+                                ExpenseLabelDictionary expenseLabelDictionary,
+                                ExpenseAnalyticsEngine expenseAnalyticsEngine,
+                                DashboardCache dashboardCache,
+                                Validator validator,
+                                ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager) {
+        this.expenseRepository = expenseRepository;
+        this.expenseRollupService = expenseRollupService;
+        this.expenseSearchIndex = expenseSearchIndex;
+        this.expenseLabelDictionary = expenseLabelDictionary;
+        this.expenseAnalyticsEngine = expenseAnalyticsEngine;
+        this.dashboardCache = dashboardCache;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Accepts the layout written by CsvExportService; the ID column, if present, is ignored
+    public ExpenseImportResult importCsv(InputStream in, Long userId) throws IOException {
+
+        long started = System.currentTimeMillis();
+        long rowsRead = 0;
+        long imported = 0;
+        ErrorCollector errors = new ErrorCollector(maxReportedErrors);
+
+        List<Expense> chunk = new ArrayList<>(chunkSize);
+        List<Long> chunkRows = new ArrayList<>(chunkSize);
+
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+             CSVParser parser = IMPORT_FORMAT.parse(reader)) {
+
+            for (CSVRecord record : parser) {
+                long row = ++rowsRead;
+
+                Expense expense;
+                try {
+                    expense = toExpense(record);
+                } catch (IllegalArgumentException e) {
+                    errors.add(row, e.getMessage());
+                    continue;
+                }
+
+                String error = validationError(expense);
+                if (error != null) {
+                    errors.add(row, error);
+                    continue;
+                }
+
+                chunk.add(expense);
+                chunkRows.add(row);
+                if (chunk.size() >= chunkSize) {
+                    imported += importChunk(userId, chunk, chunkRows, errors);
+                }
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            imported += importChunk(userId, chunk, chunkRows, errors);
+        }
+
+        dashboardCache.invalidate(userId);
+
+        ExpenseImportResult result = new ExpenseImportResult(
+                rowsRead, imported, errors.count, errors.reported, System.currentTimeMillis() - started);
+        log.info("Imported {} of {} expense rows for user {} in {} ms ({} rows/s)",
+                imported, rowsRead, userId, result.elapsedMillis(), Math.round(result.rowsPerSecond()));
+        return result;
+    }
+
+    // Accepts a JSON array or newline-delimited JSON; results are emitted in input order once each chunk commits
+    public long ingestJson(InputStream in, Long userId, Consumer<ExpenseIngestResult> results) throws IOException {
+
+        long index = 0;
+        long created = 0;
+        List<Expense> chunk = new ArrayList<>(ingestChunkSize);
+        // One slot per input item since the last commit: an Expense awaiting commit or a failed result
+        List<Object> window = new ArrayList<>(ingestChunkSize);
+
+        try (MappingIterator<Expense> items = objectMapper.readerFor(Expense.class).readValues(in)) {
+            while (true) {
+                long position = index;
+                try {
+                    if (!items.hasNextValue()) {
+                        break;
+                    }
+                    Expense expense = items.nextValue();
+                    index++;
+
+                    String error = expense == null ? "Expense is required" : validationError(expense);
+                    if (error == null) {
+                        expense.setId(null);
+                        chunk.add(expense);
+                        window.add(expense);
+                    } else {
+                        window.add(ExpenseIngestResult.failed(position, error));
+                    }
+                } catch (JsonParseException e) {
+                    // Malformed input can't be resynchronised, so stop here
+                    index++;
+                    window.add(ExpenseIngestResult.failed(position, "Malformed JSON: " + e.getOriginalMessage()));
+                    break;
+                } catch (JsonMappingException e) {
+                    index++;
+                    window.add(ExpenseIngestResult.failed(position, "Invalid expense: " + e.getOriginalMessage()));
+                }
+
+                if (window.size() >= ingestChunkSize) {
+                    created += flushWindow(userId, chunk, window, results, index - window.size());
+                }
+            }
+            // Only on normal completion: after a read or write failure, e.g. a client that went away,
+            // the uncommitted chunk is dropped and the failure propagates unmasked
+            created += flushWindow(userId, chunk, window, results, index - window.size());
+        } finally {
+            // Chunks committed before a failure still changed the dashboard
+            dashboardCache.invalidate(userId);
+        }
+
+        log.info("Ingested {} of {} expenses for user {}", created, index, userId);
+        return created;
+    }
+
+    private long flushWindow(Long userId, List<Expense> chunk, List<Object> window,
+                             Consumer<ExpenseIngestResult> results, long startIndex) {
+        if (window.isEmpty()) {
+            return 0;
+        }
+        RuntimeException failure = chunk.isEmpty() ? null : persistChunk(userId, chunk);
+        long position = startIndex;
+        for (Object item : window) {
+            if (item instanceof ExpenseIngestResult result) {
+                results.accept(result);
+            } else if (failure == null) {
+                results.accept(ExpenseIngestResult.created(position, ((Expense) item).getId()));
+            } else {
+                results.accept(ExpenseIngestResult.failed(position, "Batch failed: " + failure.getMessage()));
+            }
+            position++;
+        }
+        long created = failure == null ? chunk.size() : 0;
+        chunk.clear();
+        window.clear();
+        return created;
+    }
+
+    private int importChunk(Long userId, List<Expense> chunk, List<Long> chunkRows, ErrorCollector errors) {
+        RuntimeException failure = persistChunk(userId, chunk);
+        int imported = failure == null ? chunk.size() : 0;
+        if (failure != null) {
+            log.warn("Failed to import rows {}-{}", chunkRows.get(0), chunkRows.get(chunkRows.size() - 1), failure);
+            chunkRows.forEach(row -> errors.add(row, "Batch failed: " + failure.getMessage()));
+        }
+        chunk.clear();
+        chunkRows.clear();
+        return imported;
+    }
+
+    // One transaction per chunk: a bad chunk is reported and skipped without undoing earlier ones
+    private RuntimeException persistChunk(Long userId, List<Expense> chunk) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                User user = entityManager.getReference(User.class, userId);
+                chunk.forEach(expense -> expense.setUser(user));
+                expenseLabelDictionary.encode(userId, chunk);
+                expenseRepository.saveAll(chunk);
+                expenseRollupService.recordExpenses(chunk);
+                expenseSearchIndex.add(userId, chunk);
+                expenseAnalyticsEngine.invalidateAfterCommit(userId);
+                entityManager.flush();
+                entityManager.clear();
+            });
+            return null;
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    private String validationError(Expense expense) {
+        Set<ConstraintViolation<Expense>> violations = validator.validate(expense);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private Expense toExpense(CSVRecord record) {
+        Expense expense = new Expense();
+        expense.setName(value(record, "Name"));
+        String amount = value(record, "Amount");
+        if (amount != null) {
+            try {
+                expense.setAmount(new BigDecimal(amount));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid amount: " + amount);
+            }
+        }
+        String date = value(record, "Date");
+        if (date != null) {
+            try {
+                expense.setDate(LocalDate.parse(date));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid date: " + date);
+            }
+        }
+        expense.setCategory(value(record, "Category"));
+        expense.setSubCategory(value(record, "Sub Category"));
+        expense.setLocation(value(record, "Location"));
+        expense.setCardUsed(value(record, "Card Used"));
+        return expense;
+    }
+
+    private String value(CSVRecord record, String header) {
+        if (!record.isMapped(header) || !record.isSet(header)) {
+            return null;
+        }
+        String value = record.get(header);
+        return value.isEmpty() ? null : value;
+    }
+
+    private static final class ErrorCollector {
+        private final int limit;
+        private final List<ExpenseImportResult.RowError> reported = new ArrayList<>();
+        private long count;
+
+        private ErrorCollector(int limit) {
+            this.limit = limit;
+        }
+
+        private void add(long row, String message) {
+            count++;
+            if (reported.size() < limit) {
+                reported.add(new ExpenseImportResult.RowError(row, message));
+            }
+        }
+    }
+}
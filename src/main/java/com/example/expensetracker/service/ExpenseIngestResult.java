@@ -0,0 +1,15 @@
+package com.example.expensetracker.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ExpenseIngestResult(long index, String status, Long id, String error) {
+
+    public static ExpenseIngestResult created(long index, Long id) {
+        return new ExpenseIngestResult(index, "created", id, null);
+    }
+
+    public static ExpenseIngestResult failed(long index, String error) {
+        return new ExpenseIngestResult(index, "error", null, error);
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.ExpenseLabel;
+import com.example.expensetracker.repository.ExpenseLabelRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Translates category, sub category and card names to per-user label ids and back. Both directions
+ * are cached in bounded caches. A label created inside a transaction is only cached once that
+ * transaction commits, so a rollback can't leave an id behind that no row has.
+ * Blank names are stored as no label.
+ */
+@Service
+public class ExpenseLabelDictionary {
+
+    private final ExpenseLabelRepository expenseLabelRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<LabelKey, Integer> ids;
+    private final Cache<Integer, String> names;
+
+    public ExpenseLabelDictionary(ExpenseLabelRepository expenseLabelRepository,
+                                  JdbcTemplate jdbcTemplate,
+                                  @Value("${expenses.labels.cache.max-size:100000}") long cacheMaxSize) {
+        this.expenseLabelRepository = expenseLabelRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.ids = Caffeine.newBuilder().maximumSize(cacheMaxSize).build();
+        this.names = Caffeine.newBuilder().maximumSize(cacheMaxSize).build();
+    }
+
+    // Sets the label ids from the names; call before saving
+    public void encode(Long userId, Expense expense) {
+        expense.setCategoryId(idFor(userId, ExpenseLabel.Kind.CATEGORY, expense.getCategory()));
+        expense.setSubCategoryId(idFor(userId, ExpenseLabel.Kind.SUB_CATEGORY, expense.getSubCategory()));
+        expense.setCardId(idFor(userId, ExpenseLabel.Kind.CARD, expense.getCardUsed()));
+    }
+
+    public void encode(Long userId, Collection<Expense> expenses) {
+        for (Expense expense : expenses) {
+            encode(userId, expense);
+        }
+    }
+
+    public void decode(Expense expense) {
+        expense.setCategory(name(expense.getCategoryId()));
+        expense.setSubCategory(name(expense.getSubCategoryId()));
+        expense.setCardUsed(name(expense.getCardId()));
+    }
+
+    public String name(Integer id) {
+        if (id == null) {
+            return null;
+        }
+        String name = names.getIfPresent(id);
+        if (name == null) {
+            // A user has few labels, so load all of them at once rather than one per miss
+            jdbcTemplate.query("SELECT id, name FROM expense_labels WHERE user_id = "
+                            + "(SELECT user_id FROM expense_labels WHERE id = ?)",
+                    rs -> {
+                        names.put(rs.getInt(1), rs.getString(2));
+                    },
+                    id);
+            name = names.getIfPresent(id);
+        }
+        return name;
+    }
+
+    public Integer idFor(Long userId, ExpenseLabel.Kind kind, String name) {
+        if (name == null || name.isBlank()) {
+            return null;
+        }
+        LabelKey key = new LabelKey(userId, kind, name);
+        Integer id = ids.getIfPresent(key);
+        if (id != null) {
+            return id;
+        }
+        Map<LabelKey, Integer> pending = pendingInTransaction();
+        if (pending != null && pending.containsKey(key)) {
+            return pending.get(key);
+        }
+
+        id = find(key);
+        if (id == null) {
+            try {
+                id = insert(key);
+            } catch (DuplicateKeyException e) {
+                // Another transaction created it first
+                id = find(key);
+            }
+        }
+        if (pending != null) {
+            pending.put(key, id);
+        } else {
+            ids.put(key, id);
+        }
+        return id;
+    }
+
+    public List<String> names(Long userId, ExpenseLabel.Kind kind) {
+        return expenseLabelRepository.findByUserIdAndKindOrderByName(userId, kind).stream()
+                .map(ExpenseLabel::getName)
+                .toList();
+    }
+
+    // Ids of the user's labels whose name contains the text, ignoring case
+    public Set<Integer> idsContaining(Long userId, ExpenseLabel.Kind kind, String text) {
+        String needle = text.toLowerCase(Locale.ROOT);
+        Set<Integer> matching = new LinkedHashSet<>();
+        for (ExpenseLabel label : expenseLabelRepository.findByUserIdAndKindOrderByName(userId, kind)) {
+            if (label.getName().toLowerCase(Locale.ROOT).contains(needle)) {
+                matching.add(label.getId());
+            }
+        }
+        return matching;
+    }
+
+    // Only once the user's expenses and rollups are gone, as they still point at the labels
+    public void deleteForUser(Long userId) {
+        List<Integer> labelIds = jdbcTemplate.queryForList(
+                "SELECT id FROM expense_labels WHERE user_id = ?", Integer.class, userId);
+        jdbcTemplate.update("DELETE FROM expense_labels WHERE user_id = ?", userId);
+        ids.asMap().keySet().removeIf(key -> key.userId().equals(userId));
+        names.invalidateAll(labelIds);
+    }
+
+    private Integer find(LabelKey key) {
+        List<Integer> found = jdbcTemplate.queryForList(
+                "SELECT id FROM expense_labels WHERE user_id = ? AND kind = ? AND name = ?",
+                Integer.class, key.userId(), key.kind().name(), key.name());
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    private Integer insert(LabelKey key) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO expense_labels (user_id, kind, name) VALUES (?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            statement.setLong(1, key.userId());
+            statement.setString(2, key.kind().name());
+            statement.setString(3, key.name());
+            return statement;
+        }, keyHolder);
+        return keyHolder.getKeyAs(Integer.class);
+    }
+
+    // Labels looked up or created in the current transaction, moved into the cache when it commits
+    @SuppressWarnings("unchecked")
+    private Map<LabelKey, Integer> pendingInTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Map<LabelKey, Integer> pending = (Map<LabelKey, Integer>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<LabelKey, Integer> created = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    ids.putAll(created);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ExpenseLabelDictionary.this);
+                }
+            });
+            pending = created;
+        }
+        return pending;
+    }
+
+    private record LabelKey(Long userId, ExpenseLabel.Kind kind, String name) {
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.model.Expense;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Fills in an expense's category, sub category and card names from its label ids when it is loaded,
+ * and refuses to write one whose names were never encoded. Hibernate gets it from the Spring context
+ * while the entity manager factory is still being built, so the dictionary is looked up on first use.
+ */
+@RequiredArgsConstructor
+public class ExpenseLabelListener {
+
+    private final ObjectProvider<ExpenseLabelDictionary> expenseLabelDictionary;
+
+    @PostLoad
+    public void decode(Expense expense) {
+        expenseLabelDictionary.getObject().decode(expense);
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void checkEncoded(Expense expense) {
+        if (isMissing(expense.getCategory(), expense.getCategoryId())
+                || isMissing(expense.getSubCategory(), expense.getSubCategoryId())
+                || isMissing(expense.getCardUsed(), expense.getCardId())) {
+            throw new IllegalStateException("Expense labels were not encoded before saving");
+        }
+    }
+
+    private static boolean isMissing(String name, Integer id) {
+        return name != null && !name.isBlank() && id == null;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.model.Expense;
+
+import java.util.List;
+
+public record ExpensePage(List<Expense> items, String nextCursor, boolean hasNext) {
+}
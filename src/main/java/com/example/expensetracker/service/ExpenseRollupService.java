@@ -0,0 +1,176 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.ExpenseRollup;
+import com.example.expensetracker.repository.ExpenseRepository;
+import com.example.expensetracker.repository.ExpenseRollupRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExpenseRollupService {
+
+    // NULLS NOT DISTINCT so that rows without a category, sub category or card are unique per key too
+    private static final String UNIQUE_KEY_INDEX = "idx_expense_rollups_unique_key";
+
+    private static final String KEY_SQL = "user_id = ? AND expense_year = ? AND expense_month = ? "
+            + "AND category_id IS NOT DISTINCT FROM ? AND sub_category_id IS NOT DISTINCT FROM ? "
+            + "AND card_id IS NOT DISTINCT FROM ?";
+
+    // H2 plans a statement once per connection; planned against an empty table it picks the user_id
+    // foreign key index and keeps scanning all of the user's rollups, so the key lookup names the index
+    private static final String ROW_SQL = "id = (SELECT id FROM expense_rollups USE INDEX ("
+            + UNIQUE_KEY_INDEX + ") WHERE " + KEY_SQL + ")";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ExpenseRollupRepository expenseRollupRepository;
+    private final ExpenseRepository expenseRepository;
+    private final DashboardCache dashboardCache;
+
+    // Joins the caller's transaction so the rollup moves together with the expense write
+    @Transactional
+    public void recordExpense(Expense expense) {
+        adjust(expense, expense.getAmount(), 1);
+    }
+
+    // Sums the batch per rollup key first so a large import touches each rollup row once
+    @Transactional
+    public void recordExpenses(Collection<Expense> expenses) {
+        Map<List<Object>, Expense> representatives = new LinkedHashMap<>();
+        Map<List<Object>, BigDecimal> sums = new HashMap<>();
+        Map<List<Object>, Long> counts = new HashMap<>();
+        for (Expense expense : expenses) {
+            if (expense.getUser() == null) {
+                continue;
+            }
+            List<Object> key = Arrays.asList(expense.getUser().getId(), expense.getDate().getYear(),
+                    expense.getDate().getMonthValue(), expense.getCategoryId(), expense.getSubCategoryId(),
+                    expense.getCardId());
+            representatives.putIfAbsent(key, expense);
+            sums.merge(key, expense.getAmount(), BigDecimal::add);
+            counts.merge(key, 1L, Long::sum);
+        }
+        representatives.forEach((key, expense) -> adjust(expense, sums.get(key), counts.get(key)));
+    }
+
+    @Transactional
+    public void removeExpense(Expense expense) {
+        adjust(expense, expense.getAmount().negate(), -1);
+    }
+
+    @Transactional
+    public void deleteRollupsForUser(Long userId) {
+        expenseRollupRepository.deleteByUserId(userId);
+        dashboardCache.invalidate(userId);
+    }
+
+    @Transactional
+    public int rebuildAll() {
+        expenseRollupRepository.deleteAllRollups();
+        int rows = expenseRollupRepository.rebuildFromExpenses();
+        dashboardCache.invalidateAll();
+        log.info("Rebuilt {} expense rollup rows from the expenses table", rows);
+        return rows;
+    }
+
+    // Databases created before the unique key existed may hold repeated keys; regrouping removes them
+    @Transactional
+    public void ensureUniqueKey() {
+        Integer indexes = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES "
+                + "WHERE INDEX_NAME = ?", Integer.class, UNIQUE_KEY_INDEX.toUpperCase(Locale.ROOT));
+        if (indexes != null && indexes > 0) {
+            return;
+        }
+        rebuildAll();
+        jdbcTemplate.execute("DROP INDEX IF EXISTS idx_expense_rollups_label_key");
+        jdbcTemplate.execute("CREATE UNIQUE NULLS NOT DISTINCT INDEX " + UNIQUE_KEY_INDEX + " ON expense_rollups "
+                + "(user_id, expense_year, expense_month, category_id, sub_category_id, card_id)");
+        log.info("Added the unique key of expense_rollups");
+    }
+
+    @Transactional(readOnly = true)
+    public List<String> verify() {
+        Map<List<Object>, Object[]> expected = index(expenseRepository.findRollupKeySums());
+        Map<List<Object>, Object[]> actual = index(expenseRollupRepository.findAllGrouped());
+
+        List<String> mismatches = new ArrayList<>();
+        Set<List<Object>> keys = new LinkedHashSet<>(expected.keySet());
+        keys.addAll(actual.keySet());
+
+        for (List<Object> key : keys) {
+            Object[] raw = expected.get(key);
+            Object[] rollup = actual.get(key);
+            BigDecimal rawTotal = raw != null ? (BigDecimal) raw[0] : BigDecimal.ZERO;
+            BigDecimal rollupTotal = rollup != null ? (BigDecimal) rollup[0] : BigDecimal.ZERO;
+            long rawCount = raw != null ? ((Number) raw[1]).longValue() : 0;
+            long rollupCount = rollup != null ? ((Number) rollup[1]).longValue() : 0;
+
+            if (rawTotal.compareTo(rollupTotal) != 0 || rawCount != rollupCount) {
+                mismatches.add(key + ": expenses=" + rawTotal + "/" + rawCount
+                        + " rollups=" + rollupTotal + "/" + rollupCount);
+            }
+        }
+
+        if (mismatches.isEmpty()) {
+            log.info("Expense rollups match the expenses table ({} keys)", keys.size());
+        } else {
+            log.warn("Expense rollups differ from the expenses table for {} keys", mismatches.size());
+        }
+        return mismatches;
+    }
+
+    // Expenses without an owner have no rollups, as in rebuildFromExpenses.
+    // The UPDATE locks an existing row; a missing one is inserted, and if a concurrent transaction
+    // inserted the same key first, the unique key rejects ours and the UPDATE is repeated.
+    private void adjust(Expense expense, BigDecimal amount, long count) {
+        if (expense.getUser() == null) {
+            return;
+        }
+        Object[] key = {expense.getUser().getId(), expense.getDate().getYear(), expense.getDate().getMonthValue(),
+                expense.getCategoryId(), expense.getSubCategoryId(), expense.getCardId()};
+
+        if (increment(key, amount, count) == 0) {
+            try {
+                jdbcTemplate.update("INSERT INTO expense_rollups (user_id, expense_year, expense_month, "
+                                + "category_id, sub_category_id, card_id, total, expense_count) "
+                                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                        key[0], key[1], key[2], key[3], key[4], key[5], amount, count);
+            } catch (DuplicateKeyException e) {
+                increment(key, amount, count);
+            }
+        }
+
+        if (count < 0) {
+            jdbcTemplate.update("DELETE FROM expense_rollups WHERE " + ROW_SQL + " AND expense_count <= 0", key);
+        }
+    }
+
+    private int increment(Object[] key, BigDecimal amount, long count) {
+        Object[] args = new Object[key.length + 2];
+        args[0] = amount;
+        args[1] = count;
+        System.arraycopy(key, 0, args, 2, key.length);
+        return jdbcTemplate.update("UPDATE expense_rollups SET total = total + ?, expense_count = expense_count + ? "
+                + "WHERE " + ROW_SQL, args);
+    }
+
+    // Row layout: userId, year, month, categoryId, subCategoryId, cardId, total, count
+    private Map<List<Object>, Object[]> index(List<Object[]> rows) {
+        Map<List<Object>, Object[]> indexed = new HashMap<>();
+        for (Object[] row : rows) {
+            List<Object> key = Arrays.asList(
+                    row[0], ((Number) row[1]).intValue(), ((Number) row[2]).intValue(), row[3], row[4], row[5]);
+            indexed.put(key, new Object[]{row[6], row[7]});
+        }
+        return indexed;
+    }
+}
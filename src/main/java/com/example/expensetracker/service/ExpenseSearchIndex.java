@@ -0,0 +1,149 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.repository.SearchTerms;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index over expense name, location, category and sub category, kept in the
+ * expense_search_terms table. Writes join the caller's transaction so the terms change together
+ * with the expense. Lookups prefix-match each query word against the (user_id, term) index.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExpenseSearchIndex {
+
+    private static final int NAME_WEIGHT = 4;
+    private static final int LOCATION_WEIGHT = 2;
+    private static final int CATEGORY_WEIGHT = 1;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO expense_search_terms (expense_id, term, user_id, weight) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // For expenses that have no terms yet, i.e. ones inserted in this transaction
+    @Transactional
+    public void add(Long userId, Collection<Expense> expenses) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Expense expense : expenses) {
+            terms(expense.getName(), expense.getLocation(), expense.getCategory(), expense.getSubCategory())
+                    .forEach((term, weight) -> rows.add(new Object[]{expense.getId(), term, userId, weight}));
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        }
+    }
+
+    @Transactional
+    public void replace(Long userId, Expense expense) {
+        remove(expense.getId());
+        add(userId, List.of(expense));
+    }
+
+    @Transactional
+    public void remove(Long expenseId) {
+        jdbcTemplate.update("DELETE FROM expense_search_terms WHERE expense_id = ?", expenseId);
+    }
+
+    @Transactional
+    public void deleteForUser(Long userId) {
+        jdbcTemplate.update("DELETE FROM expense_search_terms WHERE user_id = ?", userId);
+    }
+
+    /**
+     * Ids of the user's expenses where every query word is a prefix of some indexed word, best
+     * first: ranked by the summed weight of the matching words, then newest first.
+     */
+    @Transactional(readOnly = true)
+    public List<Long> search(Long userId, String text, int limit) {
+        List<String> words = new ArrayList<>(SearchTerms.tokenize(text));
+        if (words.isEmpty()) {
+            return List.of();
+        }
+
+        // Words only contain letters and digits, so they need no LIKE escaping
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT expense_id FROM expense_search_terms WHERE user_id = ? AND (");
+        args.add(userId);
+        for (int i = 0; i < words.size(); i++) {
+            sql.append(i > 0 ? " OR " : "").append("term LIKE ?");
+            args.add(words.get(i) + "%");
+        }
+        sql.append(") GROUP BY expense_id");
+        if (words.size() > 1) {
+            sql.append(" HAVING ");
+            for (int i = 0; i < words.size(); i++) {
+                sql.append(i > 0 ? " AND " : "").append("MAX(CASE WHEN term LIKE ? THEN 1 ELSE 0 END) = 1");
+                args.add(words.get(i) + "%");
+            }
+        }
+        sql.append(" ORDER BY SUM(weight) DESC, expense_id DESC LIMIT ?");
+        args.add(limit);
+
+        return jdbcTemplate.queryForList(sql.toString(), Long.class, args.toArray());
+    }
+
+    public boolean isEmpty() {
+        return jdbcTemplate.queryForList("SELECT expense_id FROM expense_search_terms LIMIT 1", Long.class).isEmpty();
+    }
+
+    // Not one transaction: each batch commits on its own, so a rebuild of millions of rows holds no huge undo log.
+    // An interrupted rebuild leaves the index partial; run it again. Expenses that already have terms, e.g. from
+    // a save while a caller rebuilds outside startup, are skipped rather than inserted twice.
+    public long rebuildAll(int batchSize) {
+        jdbcTemplate.update("DELETE FROM expense_search_terms");
+
+        long indexed = 0;
+        long afterId = 0;
+        while (true) {
+            List<Object[]> rows = new ArrayList<>();
+            List<Long> ids = new ArrayList<>(batchSize);
+            jdbcTemplate.query("SELECT e.id, e.user_id, e.name, e.location, c.name, s.name FROM expenses e "
+                            + "LEFT JOIN expense_labels c ON c.id = e.category_id "
+                            + "LEFT JOIN expense_labels s ON s.id = e.sub_category_id "
+                            + "WHERE e.id > ? AND e.user_id IS NOT NULL "
+                            + "AND NOT EXISTS (SELECT 1 FROM expense_search_terms t WHERE t.expense_id = e.id) "
+                            + "ORDER BY e.id LIMIT ?",
+                    rs -> {
+                        long id = rs.getLong(1);
+                        long userId = rs.getLong(2);
+                        ids.add(id);
+                        terms(rs.getString(3), rs.getString(4), rs.getString(5), rs.getString(6))
+                                .forEach((term, weight) -> rows.add(new Object[]{id, term, userId, weight}));
+                    },
+                    afterId, batchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            }
+            indexed += ids.size();
+            afterId = ids.get(ids.size() - 1);
+        }
+
+        log.info("Rebuilt the search index for {} expenses", indexed);
+        return indexed;
+    }
+
+    private static Map<String, Integer> terms(String name, String location, String category, String subCategory) {
+        Map<String, Integer> terms = new HashMap<>();
+        SearchTerms.tokenize(name).forEach(term -> terms.merge(term, NAME_WEIGHT, Math::max));
+        SearchTerms.tokenize(location).forEach(term -> terms.merge(term, LOCATION_WEIGHT, Math::max));
+        SearchTerms.tokenize(category).forEach(term -> terms.merge(term, CATEGORY_WEIGHT, Math::max));
+        SearchTerms.tokenize(subCategory).forEach(term -> terms.merge(term, CATEGORY_WEIGHT, Math::max));
+        return terms;
+    }
+}
@@ -1,86 +1,246 @@
 package com.example.expensetracker.service;
 
 import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.ExpenseLabel;
 import com.example.expensetracker.model.User;
 import com.example.expensetracker.repository.ExpenseRepository;
+import com.example.expensetracker.repository.ExpenseRollupRepository;
+import com.example.expensetracker.repository.ExpenseSpecifications;
 import com.example.expensetracker.repository.UserRepository;
+import com.example.expensetracker.service.ExpenseColumns.Dimension;
+import com.example.expensetracker.service.ExpenseColumns.Filter;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
+@Timed(value = "service.method", histogram = true)
 public class ExpenseService {
 
     private final ExpenseRepository expenseRepository;
     private final UserRepository userRepository;
+    private final ExpenseRollupRepository expenseRollupRepository;
+    private final ExpenseRollupService expenseRollupService;
+    private final DashboardCache dashboardCache;
+    private final ExpenseSearchIndex expenseSearchIndex;
+    private final ExpenseLabelDictionary expenseLabelDictionary;
+    private final ExpenseAnalyticsEngine expenseAnalyticsEngine;
 
     @Transactional
-    public Expense saveExpense(Expense expense, String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    public Expense saveExpense(Expense expense, Long userId) {
+        User user = userRepository.getReferenceById(userId);
+        boolean update = expense.getId() != null;
+        
+        if (update) {
+            expenseRepository.findById(expense.getId()).ifPresent(existing -> {
+                if (!existing.getUser().getId().equals(user.getId())) {
+                    throw new RuntimeException("Unauthorized access");
+                }
+                expenseRollupService.removeExpense(existing);
+            });
+        }
+        
         expense.setUser(user);
-        return expenseRepository.save(expense);
+        expenseLabelDictionary.encode(userId, expense);
+        Expense saved = expenseRepository.save(expense);
+        // An update merges into the instance loaded above, whose names are still the old ones
+        expenseLabelDictionary.decode(saved);
+        expenseRollupService.recordExpense(saved);
+        if (update) {
+            expenseSearchIndex.replace(userId, saved);
+        } else {
+            expenseSearchIndex.add(userId, List.of(saved));
+        }
+        // Registered first so the columns are current before the dashboard cache is dropped
+        expenseAnalyticsEngine.recordSaveAfterCommit(userId, saved);
+        dashboardCache.invalidateAfterCommit(userId);
+        return saved;
+    }
+
+    @Transactional
+    public void deleteExpense(Long id, Long userId) {
+        User user = userRepository.getReferenceById(userId);
+        Expense expense = expenseRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Expense not found"));
+        
+        if (!expense.getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("Unauthorized access");
+        }
+        
+        expenseRollupService.removeExpense(expense);
+        expenseSearchIndex.remove(id);
+        expenseRepository.delete(expense);
+        expenseAnalyticsEngine.recordDeleteAfterCommit(userId, id);
+        dashboardCache.invalidateAfterCommit(userId);
     }
 
     public List<Expense> getAllExpenses() {
-        return expenseRepository.findAll();
+        return expenseRepository.findAllWithUser();
     }
 
-    public List<Expense> getExpensesByUser(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    public List<Expense> getExpensesByUser(Long userId) {
+        User user = userRepository.getReferenceById(userId);
         return expenseRepository.findByUser(user);
     }
 
-    public List<Expense> searchExpenses(String username, String category, LocalDate startDate, 
-                                       LocalDate endDate, BigDecimal minAmount, String name) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    public ExpensePage getExpensePage(Long userId, String cursor, int pageSize) {
+        User user = userRepository.getReferenceById(userId);
         
-        List<Expense> expenses = expenseRepository.findByUser(user);
-        
-        if (category != null && !category.isEmpty()) {
-            expenses = expenses.stream()
-                    .filter(e -> e.getCategory().toLowerCase().contains(category.toLowerCase()))
-                    .collect(Collectors.toList());
+        // Fetch one extra row to learn whether another page exists without a count query
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+        List<Expense> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = expenseRepository.findFirstPage(user, limit);
+        } else {
+            ExpenseCursor after = ExpenseCursor.decode(cursor);
+            rows = expenseRepository.findPageAfter(user, after.date(), after.id(), limit);
         }
         
-        if (startDate != null && endDate != null) {
-            expenses = expenses.stream()
-                    .filter(e -> !e.getDate().isBefore(startDate) && !e.getDate().isAfter(endDate))
-                    .collect(Collectors.toList());
+        boolean hasNext = rows.size() > pageSize;
+        List<Expense> items = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasNext ? ExpenseCursor.of(items.get(items.size() - 1)).encode() : null;
+        return new ExpensePage(items, nextCursor, hasNext);
+    }
+
+    // Best matches first; see ExpenseSearchIndex.search
+    @Transactional(readOnly = true)
+    public List<Expense> searchExpensesByText(Long userId, String text, int limit) {
+        List<Long> ids = expenseSearchIndex.search(userId, text, limit);
+        Map<Long, Expense> byId = new HashMap<>();
+        expenseRepository.findAllById(ids).forEach(expense -> byId.put(expense.getId(), expense));
+        List<Expense> ranked = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Expense expense = byId.get(id);
+            if (expense != null) {
+                ranked.add(expense);
+            }
         }
+        return ranked;
+    }
+
+    public List<Expense> searchExpenses(Long userId, String category, LocalDate startDate, 
+                                       LocalDate endDate, BigDecimal minAmount, String name) {
+        return searchExpenses(userId, category, startDate, endDate, minAmount, null, name, Sort.unsorted());
+    }
+
+    public List<Expense> searchExpenses(Long userId, String category, LocalDate startDate,
+                                       LocalDate endDate, BigDecimal minAmount, BigDecimal maxAmount,
+                                       String name, Sort sort) {
+        User user = userRepository.getReferenceById(userId);
+        
+        return expenseRepository.findAll(
+                ExpenseSpecifications.search(user, categoryIds(userId, category), startDate, endDate,
+                        minAmount, maxAmount, name),
+                sort != null ? sort : Sort.unsorted());
+    }
+
+    @Transactional(readOnly = true)
+    public void streamExpenses(Long userId, String category, LocalDate startDate,
+                               LocalDate endDate, BigDecimal minAmount, BigDecimal maxAmount,
+                               String name, Sort sort, Consumer<Expense> action) {
+        User user = userRepository.getReferenceById(userId);
         
-        if (minAmount != null) {
-            expenses = expenses.stream()
-                    .filter(e -> e.getAmount().compareTo(minAmount) >= 0)
-                    .collect(Collectors.toList());
+        try (Stream<Expense> expenses = expenseRepository.streamAll(
+                ExpenseSpecifications.search(user, categoryIds(userId, category), startDate, endDate,
+                        minAmount, maxAmount, name),
+                sort != null ? sort : Sort.unsorted())) {
+            expenses.forEach(action);
+        }
+    }
+
+    // Category names the user has used, for the search form
+    public List<String> getCategories(Long userId) {
+        return expenseLabelDictionary.names(userId, ExpenseLabel.Kind.CATEGORY);
+    }
+
+    // Resolves the substring filter to label ids once instead of matching every row's name
+    private Set<Integer> categoryIds(Long userId, String category) {
+        if (category == null || category.isEmpty()) {
+            return null;
+        }
+        return expenseLabelDictionary.idsContaining(userId, ExpenseLabel.Kind.CATEGORY, category);
+    }
+
+    public Map<String, BigDecimal> getExpenseSumByCategory(Long userId) {
+        return dashboardCache.get(userId, "category",
+                () -> Collections.unmodifiableMap(loadExpenseSumByCategory(userId)));
+    }
+
+    public Map<String, Map<String, BigDecimal>> getExpenseSumByCategoryAndSubCategory(Long userId) {
+        return dashboardCache.get(userId, "categoryAndSubCategory",
+                () -> Collections.unmodifiableMap(loadExpenseSumByCategoryAndSubCategory(userId)));
+    }
+
+    public Map<Integer, BigDecimal> getMonthlyExpenseSumByYear(Long userId, int year) {
+        return dashboardCache.get(userId, "monthly:" + year,
+                () -> Collections.unmodifiableMap(loadMonthlyExpenseSumByYear(userId, year)));
+    }
+
+    public Map<String, BigDecimal> getExpenseSumByCard(Long userId) {
+        return dashboardCache.get(userId, "card",
+                () -> Collections.unmodifiableMap(loadExpenseSumByCard(userId)));
+    }
+
+    public DashboardSummary getDashboardSummary(Long userId, int year) {
+        return dashboardCache.get(userId, "summary:" + year, () -> loadDashboardSummary(userId, year));
+    }
+
+    private DashboardSummary loadDashboardSummary(Long userId, int year) {
+        if (expenseAnalyticsEngine.isEnabled()) {
+            return analyzeDashboardSummary(userId, year);
         }
+        User user = userRepository.getReferenceById(userId);
         
-        if (name != null && !name.isEmpty()) {
-            expenses = expenses.stream()
-                    .filter(e -> e.getName().toLowerCase().contains(name.toLowerCase()))
-                    .collect(Collectors.toList());
+        // One statement returns every (category, card, year, month) cell; all dashboard groupings are folded from it
+        List<Object[]> results = expenseRollupRepository.findDashboardSums(user);
+        Map<String, BigDecimal> categorySum = new HashMap<>();
+        Map<Integer, BigDecimal> monthlySum = new HashMap<>();
+        Map<String, BigDecimal> cardSum = new HashMap<>();
+        BigDecimal total = BigDecimal.ZERO;
+        
+        for (Object[] result : results) {
+            String category = expenseLabelDictionary.name((Integer) result[0]);
+            String card = expenseLabelDictionary.name((Integer) result[1]);
+            int rowYear = ((Number) result[2]).intValue();
+            int month = ((Number) result[3]).intValue();
+            BigDecimal sum = (BigDecimal) result[4];
+            
+            categorySum.merge(category, sum, BigDecimal::add);
+            cardSum.merge(card != null ? card : "Cash/Unknown", sum, BigDecimal::add);
+            if (rowYear == year) {
+                monthlySum.merge(month, sum, BigDecimal::add);
+            }
+            total = total.add(sum);
         }
         
-        return expenses;
+        return new DashboardSummary(year, total,
+                Collections.unmodifiableMap(categorySum),
+                Collections.unmodifiableMap(monthlySum),
+                Collections.unmodifiableMap(cardSum));
     }
 
-    public Map<String, BigDecimal> getExpenseSumByCategory(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    private Map<String, BigDecimal> loadExpenseSumByCategory(Long userId) {
+        if (expenseAnalyticsEngine.isEnabled()) {
+            return labelSums(expenseAnalyticsEngine.aggregate(userId, Filter.ALL, Dimension.CATEGORY), null);
+        }
+        User user = userRepository.getReferenceById(userId);
         
-        List<Object[]> results = expenseRepository.findExpenseSumByCategory(user);
+        List<Object[]> results = expenseRollupRepository.findExpenseSumByCategory(user);
         Map<String, BigDecimal> categorySum = new HashMap<>();
         
         for (Object[] result : results) {
-            String category = (String) result[0];
+            String category = expenseLabelDictionary.name((Integer) result[0]);
             BigDecimal sum = (BigDecimal) result[1];
             categorySum.put(category, sum);
         }
@@ -88,16 +248,18 @@ public class ExpenseService {
         return categorySum;
     }
 
-    public Map<String, Map<String, BigDecimal>> getExpenseSumByCategoryAndSubCategory(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    private Map<String, Map<String, BigDecimal>> loadExpenseSumByCategoryAndSubCategory(Long userId) {
+        if (expenseAnalyticsEngine.isEnabled()) {
+            return analyzeExpenseSumByCategoryAndSubCategory(userId);
+        }
+        User user = userRepository.getReferenceById(userId);
         
-        List<Object[]> results = expenseRepository.findExpenseSumByCategoryAndSubCategory(user);
+        List<Object[]> results = expenseRollupRepository.findExpenseSumByCategoryAndSubCategory(user);
         Map<String, Map<String, BigDecimal>> categorizedExpenses = new HashMap<>();
         
         for (Object[] result : results) {
-            String category = (String) result[0];
-            String subCategory = (String) result[1];
+            String category = expenseLabelDictionary.name((Integer) result[0]);
+            String subCategory = expenseLabelDictionary.name((Integer) result[1]);
             BigDecimal sum = (BigDecimal) result[2];
             
             categorizedExpenses.computeIfAbsent(category, k -> new HashMap<>())
@@ -107,11 +269,13 @@ public class ExpenseService {
         return categorizedExpenses;
     }
 
-    public Map<Integer, BigDecimal> getMonthlyExpenseSumByYear(String username, int year) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    private Map<Integer, BigDecimal> loadMonthlyExpenseSumByYear(Long userId, int year) {
+        if (expenseAnalyticsEngine.isEnabled()) {
+            return monthSums(expenseAnalyticsEngine.columns(userId), year);
+        }
+        User user = userRepository.getReferenceById(userId);
         
-        List<Object[]> results = expenseRepository.findMonthlyExpenseSumByYear(user, year);
+        List<Object[]> results = expenseRollupRepository.findMonthlyExpenseSumByYear(user, year);
         Map<Integer, BigDecimal> monthlySum = new HashMap<>();
         
         for (Object[] result : results) {
@@ -123,19 +287,78 @@ public class ExpenseService {
         return monthlySum;
     }
 
-    public Map<String, BigDecimal> getExpenseSumByCard(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    private Map<String, BigDecimal> loadExpenseSumByCard(Long userId) {
+        if (expenseAnalyticsEngine.isEnabled()) {
+            return labelSums(expenseAnalyticsEngine.aggregate(userId, Filter.ALL, Dimension.CARD), "Cash/Unknown");
+        }
+        User user = userRepository.getReferenceById(userId);
         
-        List<Object[]> results = expenseRepository.findExpenseSumByCard(user);
+        List<Object[]> results = expenseRollupRepository.findExpenseSumByCard(user);
         Map<String, BigDecimal> cardSum = new HashMap<>();
         
         for (Object[] result : results) {
-            String card = (String) result[0];
+            String card = expenseLabelDictionary.name((Integer) result[0]);
             BigDecimal sum = (BigDecimal) result[1];
             cardSum.put(card != null ? card : "Cash/Unknown", sum);
         }
         
         return cardSum;
     }
+
+    // The analytics engine versions below return the same maps as the rollup queries above
+
+    private DashboardSummary analyzeDashboardSummary(Long userId, int year) {
+        // One snapshot for all groupings, like the single rollup statement
+        ExpenseColumns columns = expenseAnalyticsEngine.columns(userId);
+        ExpenseAggregation categories = columns.aggregate(Filter.ALL, Dimension.CATEGORY);
+        long totalCents = 0;
+        for (int code = 0; code < categories.size(); code++) {
+            totalCents += categories.cents()[code];
+        }
+        return new DashboardSummary(year, ExpenseColumns.toAmount(totalCents),
+                Collections.unmodifiableMap(labelSums(categories, null)),
+                Collections.unmodifiableMap(monthSums(columns, year)),
+                Collections.unmodifiableMap(labelSums(columns.aggregate(Filter.ALL, Dimension.CARD), "Cash/Unknown")));
+    }
+
+    private Map<String, Map<String, BigDecimal>> analyzeExpenseSumByCategoryAndSubCategory(Long userId) {
+        ExpenseAggregation sums = expenseAnalyticsEngine.aggregate(userId, Filter.ALL,
+                Dimension.CATEGORY.then(Dimension.SUB_CATEGORY));
+        int labels = sums.columns().labelCount();
+        Map<String, Map<String, BigDecimal>> categorizedExpenses = new HashMap<>();
+        for (int key = 0; key < sums.size(); key++) {
+            if (sums.isEmpty(key)) {
+                continue;
+            }
+            String category = expenseLabelDictionary.name(sums.columns().labelId(key / labels));
+            String subCategory = expenseLabelDictionary.name(sums.columns().labelId(key % labels));
+            categorizedExpenses.computeIfAbsent(category, k -> new HashMap<>())
+                    .put(subCategory != null ? subCategory : "Uncategorized", sums.amount(key));
+        }
+        return categorizedExpenses;
+    }
+
+    private Map<Integer, BigDecimal> monthSums(ExpenseColumns columns, int year) {
+        LocalDate from = LocalDate.of(year, 1, 1);
+        ExpenseAggregation sums = columns.aggregate(Filter.between(from, from.plusYears(1)), Dimension.MONTH_OF_YEAR);
+        Map<Integer, BigDecimal> monthlySum = new HashMap<>();
+        for (int month = 0; month < sums.size(); month++) {
+            if (!sums.isEmpty(month)) {
+                monthlySum.put(month + 1, sums.amount(month));
+            }
+        }
+        return monthlySum;
+    }
+
+    // Keyed by label name; rows without a label, or whose label has no name, go under unlabelled
+    private Map<String, BigDecimal> labelSums(ExpenseAggregation sums, String unlabelled) {
+        Map<String, BigDecimal> byName = new HashMap<>();
+        for (int code = 0; code < sums.size(); code++) {
+            if (!sums.isEmpty(code)) {
+                String name = expenseLabelDictionary.name(sums.columns().labelId(code));
+                byName.merge(name != null ? name : unlabelled, sums.amount(code), BigDecimal::add);
+            }
+        }
+        return byName;
+    }
 }
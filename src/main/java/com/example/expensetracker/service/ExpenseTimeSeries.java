@@ -0,0 +1,34 @@
+package com.example.expensetracker.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Spending totals per time bucket. periods[0] is the requested range; with a comparison,
+ * periods[n] is the same range n years earlier. Every list in every period has the same length,
+ * zeros included: the bucket count of the longest period. A shifted range with fewer buckets (no leap
+ * day, no 53rd ISO week) ends in empty buckets past its to, so index i is the i-th bucket from each
+ * period's start.
+ */
+public record ExpenseTimeSeries(TimeBucket bucket,
+                                Breakdown breakdown,
+                                List<Period> periods) {
+
+    public enum Breakdown {
+        NONE,
+        CATEGORY,
+        CARD
+    }
+
+    // from and to are inclusive; the first and last bucket only cover days inside the range
+    public record Period(LocalDate from,
+                         LocalDate to,
+                         List<LocalDate> bucketStarts,
+                         List<BigDecimal> totals,
+                         List<Series> series) {
+    }
+
+    public record Series(String name, List<BigDecimal> totals) {
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.service.ExpenseColumns.Dimension;
+import com.example.expensetracker.service.ExpenseColumns.Filter;
+import com.example.expensetracker.service.ExpenseTimeSeries.Breakdown;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Spending per time bucket over arbitrary date ranges. Buckets are summed by the database, with one
+ * GROUP BY over the (user_id, date) index range, or by the analytics engine when it is enabled;
+ * expense rows are never loaded.
+ */
+@Service
+@Timed(value = "service.method", histogram = true)
+public class ExpenseTimeSeriesService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ExpenseAnalyticsEngine expenseAnalyticsEngine;
+    private final ExpenseLabelDictionary expenseLabelDictionary;
+    private final int maxBuckets;
+    private final int maxCompareYears;
+
+    public ExpenseTimeSeriesService(JdbcTemplate jdbcTemplate,
+                                    ExpenseAnalyticsEngine expenseAnalyticsEngine,
+                                    ExpenseLabelDictionary expenseLabelDictionary,
+                                    @Value("${expenses.timeseries.max-buckets:4000}") int maxBuckets,
+                                    @Value("${expenses.timeseries.max-compare-years:10}") int maxCompareYears) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.expenseAnalyticsEngine = expenseAnalyticsEngine;
+        this.expenseLabelDictionary = expenseLabelDictionary;
+        this.maxBuckets = maxBuckets;
+        this.maxCompareYears = maxCompareYears;
+    }
+
+    // from and to are inclusive; compareYears adds the same range shifted back 1..compareYears years
+    @Transactional(readOnly = true)
+    public ExpenseTimeSeries getTimeSeries(Long userId, LocalDate from, LocalDate to, TimeBucket bucket,
+                                           Breakdown breakdown, int compareYears) {
+        validate(from, to, bucket, compareYears).ifPresent(error -> {
+            throw new IllegalArgumentException(error);
+        });
+
+        // A shifted range can have a bucket more or less (a leap day, a 53rd ISO week), so every period
+        // gets the longest period's bucket count and shorter ones end in empty buckets past their range
+        int buckets = buckets(from, to, bucket, compareYears);
+        List<ExpenseTimeSeries.Period> periods = new ArrayList<>(compareYears + 1);
+        for (int yearsBack = 0; yearsBack <= compareYears; yearsBack++) {
+            periods.add(period(userId, from.minusYears(yearsBack), to.minusYears(yearsBack), bucket, breakdown,
+                    buckets));
+        }
+        return new ExpenseTimeSeries(bucket, breakdown, periods);
+    }
+
+    // Returns why the request can't be served, if it can't
+    public Optional<String> validate(LocalDate from, LocalDate to, TimeBucket bucket, int compareYears) {
+        if (from.isAfter(to)) {
+            return Optional.of("from is after to");
+        }
+        if (compareYears < 0 || compareYears > maxCompareYears) {
+            return Optional.of("compareYears must be between 0 and " + maxCompareYears);
+        }
+        if (buckets(from, to, bucket, compareYears) > maxBuckets) {
+            return Optional.of("More than " + maxBuckets + " buckets; use a larger bucket");
+        }
+        return Optional.empty();
+    }
+
+    private static int buckets(LocalDate from, LocalDate to, TimeBucket bucket, int compareYears) {
+        int buckets = 0;
+        for (int yearsBack = 0; yearsBack <= compareYears; yearsBack++) {
+            buckets = Math.max(buckets, bucket.count(from.minusYears(yearsBack), to.minusYears(yearsBack)));
+        }
+        return buckets;
+    }
+
+    private ExpenseTimeSeries.Period period(Long userId, LocalDate from, LocalDate to, TimeBucket bucket,
+                                            Breakdown breakdown, int buckets) {
+        Sums sums = new Sums(buckets, breakdown != Breakdown.NONE);
+        if (expenseAnalyticsEngine.isEnabled()) {
+            sumInEngine(userId, from, to, bucket, breakdown, sums);
+        } else {
+            sumInDatabase(userId, from, to, bucket, breakdown, sums);
+        }
+
+        List<LocalDate> bucketStarts = new ArrayList<>(sums.totals.length);
+        for (LocalDate start = bucket.start(from); bucketStarts.size() < sums.totals.length; start = bucket.next(start)) {
+            bucketStarts.add(start);
+        }
+
+        String unlabelled = breakdown == Breakdown.CARD ? "Cash/Unknown" : "Uncategorized";
+        List<ExpenseTimeSeries.Series> series = new ArrayList<>(sums.byLabel.size());
+        sums.byLabel.forEach((labelId, cents) -> {
+            String name = labelId == ExpenseColumns.NO_LABEL ? null : expenseLabelDictionary.name(labelId);
+            series.add(new ExpenseTimeSeries.Series(name != null ? name : unlabelled, amounts(cents)));
+        });
+        series.sort(Comparator.comparing(ExpenseTimeSeries.Series::name));
+
+        return new ExpenseTimeSeries.Period(from, to, bucketStarts, amounts(sums.totals), series);
+    }
+
+    private void sumInDatabase(Long userId, LocalDate from, LocalDate to, TimeBucket bucket, Breakdown breakdown,
+                               Sums sums) {
+        String labelColumn = labelColumn(breakdown);
+        StringBuilder sql = new StringBuilder("SELECT MIN(date), SUM(amount)");
+        if (labelColumn != null) {
+            sql.append(", ").append(labelColumn);
+        }
+        sql.append(" FROM expenses WHERE user_id = ? AND date >= ? AND date <= ? GROUP BY ")
+                .append(bucket.groupBySql());
+        if (labelColumn != null) {
+            sql.append(", ").append(labelColumn);
+        }
+
+        // Any day of a group lies in the group's bucket, so its earliest day gives the bucket index
+        int origin = (int) bucket.start(from).toEpochDay();
+        jdbcTemplate.query(sql.toString(),
+                rs -> {
+                    int index = bucket.index((int) rs.getDate(1).toLocalDate().toEpochDay(), origin);
+                    long cents = ExpenseColumns.toCents(rs.getBigDecimal(2));
+                    sums.add(labelColumn != null ? rs.getInt(3) : ExpenseColumns.NO_LABEL, index, cents);
+                },
+                userId, from, to);
+    }
+
+    private void sumInEngine(Long userId, LocalDate from, LocalDate to, TimeBucket bucket, Breakdown breakdown,
+                             Sums sums) {
+        ExpenseColumns.Grouping grouping = bucket.grouping(from, to);
+        if (breakdown == Breakdown.CATEGORY) {
+            grouping = grouping.then(Dimension.CATEGORY);
+        } else if (breakdown == Breakdown.CARD) {
+            grouping = grouping.then(Dimension.CARD);
+        }
+        ExpenseAggregation aggregation = expenseAnalyticsEngine.aggregate(userId,
+                Filter.between(from, to.plusDays(1)), grouping);
+
+        // The grouping covers this period's own buckets, which may be fewer than sums holds
+        int labels = aggregation.size() / bucket.count(from, to);
+        for (int key = 0; key < aggregation.size(); key++) {
+            if (aggregation.isEmpty(key)) {
+                continue;
+            }
+            Integer labelId = aggregation.columns().labelId(key % labels);
+            sums.add(labelId != null ? labelId : ExpenseColumns.NO_LABEL, key / labels, aggregation.cents()[key]);
+        }
+    }
+
+    private static String labelColumn(Breakdown breakdown) {
+        return switch (breakdown) {
+            case CATEGORY -> "category_id";
+            case CARD -> "card_id";
+            case NONE -> null;
+        };
+    }
+
+    private static List<BigDecimal> amounts(long[] cents) {
+        List<BigDecimal> amounts = new ArrayList<>(cents.length);
+        for (long value : cents) {
+            amounts.add(ExpenseColumns.toAmount(value));
+        }
+        return amounts;
+    }
+
+    // Cents per bucket, overall and, with a breakdown, per label id
+    private static final class Sums {
+
+        private final long[] totals;
+        private final boolean perLabel;
+        private final Map<Integer, long[]> byLabel = new HashMap<>();
+
+        private Sums(int buckets, boolean perLabel) {
+            this.totals = new long[buckets];
+            this.perLabel = perLabel;
+        }
+
+        private void add(int labelId, int bucket, long cents) {
+            totals[bucket] += cents;
+            if (perLabel) {
+                byLabel.computeIfAbsent(labelId, id -> new long[totals.length])[bucket] += cents;
+            }
+        }
+    }
+}
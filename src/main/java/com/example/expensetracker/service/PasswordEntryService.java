@@ -3,29 +3,41 @@ package com.example.expensetracker.service;
 import com.example.expensetracker.model.PasswordEntry;
 import com.example.expensetracker.model.User;
 import com.example.expensetracker.repository.PasswordEntryRepository;
+import com.example.expensetracker.repository.PasswordEntrySpecifications;
+import com.example.expensetracker.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
+@Timed(value = "service.method", histogram = true)
 public class PasswordEntryService {
 
     private final PasswordEntryRepository passwordEntryRepository;
     private final EncryptionService encryptionService;
+    private final UserRepository userRepository;
+    private final VaultWorkerPool vaultWorkerPool;
 
     @Transactional
-    public PasswordEntry createPasswordEntry(PasswordEntry entry, String plainPassword, String masterPassword, String currentUsername) throws Exception {
-        entry.setEncryptedPassword(encryptionService.encrypt(plainPassword, masterPassword));
+    public PasswordEntry createPasswordEntry(PasswordEntry entry, String plainPassword, byte[] dataKey, String currentUsername) throws Exception {
+        entry.setEncryptedPassword(encryptionService.encryptWithDataKey(plainPassword, dataKey));
+        entry.setSearchTerms(PasswordEntrySpecifications.searchTerms(entry));
         entry.setModifiedBy(currentUsername);
         return passwordEntryRepository.save(entry);
     }
 
     @Transactional
-    public PasswordEntry updatePasswordEntry(Long id, PasswordEntry updatedEntry, String plainPassword, String masterPassword, String currentUsername) throws Exception {
+    public PasswordEntry updatePasswordEntry(Long id, PasswordEntry updatedEntry, String plainPassword, byte[] dataKey, String currentUsername) throws Exception {
         Optional<PasswordEntry> existingEntry = passwordEntryRepository.findById(id);
         if (existingEntry.isEmpty()) {
             throw new IllegalArgumentException("Password entry not found");
@@ -37,9 +49,11 @@ public class PasswordEntryService {
         entry.setUrl(updatedEntry.getUrl());
         entry.setUsername(updatedEntry.getUsername());
         entry.setEmail(updatedEntry.getEmail());
+        entry.getSearchTerms().clear();
+        entry.getSearchTerms().addAll(PasswordEntrySpecifications.searchTerms(entry));
         
         if (plainPassword != null && !plainPassword.isEmpty()) {
-            entry.setEncryptedPassword(encryptionService.encrypt(plainPassword, masterPassword));
+            entry.setEncryptedPassword(encryptionService.encryptWithDataKey(plainPassword, dataKey));
         }
         
         entry.setModifiedBy(currentUsername);
@@ -51,37 +65,94 @@ public class PasswordEntryService {
         passwordEntryRepository.deleteById(id);
     }
 
-    public List<PasswordEntry> getAllPasswordEntries(User user, String sortBy) {
-        if (sortBy == null || sortBy.isEmpty()) {
-            return passwordEntryRepository.findByUser(user);
-        }
+    public Page<PasswordEntry> searchPasswordEntries(Long userId, String text, String sortBy, String sortDir,
+                                                     int page, int size) {
+        User user = userRepository.getReferenceById(userId);
+        return passwordEntryRepository.findAll(PasswordEntrySpecifications.search(user, text),
+                PageRequest.of(page, size, PasswordEntrySpecifications.sortBy(sortBy, sortDir)));
+    }
 
-        return switch (sortBy) {
-            case "name" -> passwordEntryRepository.findByUserOrderByNameAsc(user);
-            case "url" -> passwordEntryRepository.findByUserOrderByUrlAsc(user);
-            case "modifiedBy" -> passwordEntryRepository.findByUserOrderByModifiedByAsc(user);
-            case "dateCreated" -> passwordEntryRepository.findByUserOrderByDateCreatedAsc(user);
-            case "dateLastModified" -> passwordEntryRepository.findByUserOrderByDateLastModifiedAsc(user);
-            default -> passwordEntryRepository.findByUser(user);
-        };
+    public List<PasswordEntry> getAllPasswordEntries(Long userId) {
+        return passwordEntryRepository.findByUser(userRepository.getReferenceById(userId));
+    }
+
+    // Fills in search terms for entries after afterId saved before the index existed; returns the ids looked at
+    @Transactional
+    public List<Long> indexMissingSearchTerms(long afterId, int batchSize) {
+        List<PasswordEntry> entries = passwordEntryRepository.findWithoutSearchTermsAfter(
+                afterId, PageRequest.of(0, batchSize));
+        List<Long> ids = new ArrayList<>(entries.size());
+        for (PasswordEntry entry : entries) {
+            entry.getSearchTerms().addAll(PasswordEntrySpecifications.searchTerms(entry));
+            ids.add(entry.getId());
+        }
+        return ids;
     }
 
     public Optional<PasswordEntry> getPasswordEntryById(Long id) {
         return passwordEntryRepository.findById(id);
     }
 
-    public String decryptPassword(PasswordEntry entry, String masterPassword) throws Exception {
-        return encryptionService.decrypt(entry.getEncryptedPassword(), masterPassword);
+    // One query for the owned entries, decrypted in parallel; ids the user doesn't own read as not found
+    public PasswordRevealResult revealPasswords(Long userId, Collection<Long> ids, byte[] dataKey,
+                                                String masterPassword) throws InterruptedException {
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        Map<Long, Future<String>> pending = new HashMap<>();
+        for (PasswordEntry entry : passwordEntryRepository.findByUserIdAndIdIn(userId, requested)) {
+            pending.put(entry.getId(), vaultWorkerPool.submit(() -> decryptPassword(entry, dataKey, masterPassword)));
+        }
+
+        Map<Long, String> passwords = new LinkedHashMap<>();
+        Map<Long, String> errors = new LinkedHashMap<>();
+        try {
+            for (Long id : requested) {
+                Future<String> decrypted = pending.get(id);
+                if (decrypted == null) {
+                    errors.put(id, "Password entry not found");
+                    continue;
+                }
+                try {
+                    passwords.put(id, decrypted.get());
+                } catch (ExecutionException e) {
+                    errors.put(id, "Failed to decrypt password: " + e.getCause().getMessage());
+                }
+            }
+        } finally {
+            pending.values().forEach(future -> future.cancel(true));
+        }
+        return new PasswordRevealResult(passwords, errors);
     }
 
-    @Transactional
-    public void reencryptAllPasswords(User user, String oldMasterPassword, String newMasterPassword) throws Exception {
-        List<PasswordEntry> entries = passwordEntryRepository.findByUser(user);
-        
-        for (PasswordEntry entry : entries) {
-            String plainPassword = encryptionService.decrypt(entry.getEncryptedPassword(), oldMasterPassword);
-            entry.setEncryptedPassword(encryptionService.encrypt(plainPassword, newMasterPassword));
-            passwordEntryRepository.save(entry);
+    public boolean hasLegacyEntries(Long userId) {
+        return passwordEntryRepository.countLegacyEncryptedAfter(userId, 0L) > 0;
+    }
+
+    // Entries not yet moved to the data key need the master password, which the caller must have verified
+    public String decryptPassword(PasswordEntry entry, byte[] dataKey, String masterPassword) throws Exception {
+        String encryptedPassword = entry.getEncryptedPassword();
+        if (!encryptionService.usesDataKey(encryptedPassword)) {
+            if (masterPassword == null || masterPassword.isEmpty()) {
+                throw new IllegalStateException("Password entry is still encrypted with the master password");
+            }
+            String plainPassword = encryptionService.decrypt(encryptedPassword, masterPassword);
+            upgrade(entry, plainPassword, dataKey);
+            return plainPassword;
+        }
+        String plainPassword = encryptionService.decryptWithDataKey(encryptedPassword, dataKey);
+        if (encryptionService.needsUpgrade(encryptedPassword)) {
+            upgrade(entry, plainPassword, dataKey);
+        }
+        return plainPassword;
+    }
+
+    // Rewrites a master-password or older data-key ciphertext in the current format; a failure here must not fail the read
+    private void upgrade(PasswordEntry entry, String plainPassword, byte[] dataKey) {
+        try {
+            String upgraded = encryptionService.encryptWithDataKey(plainPassword, dataKey);
+            // The entity is left as it is so a later flush can't count this as a user edit
+            passwordEntryRepository.replaceEncryptedPassword(entry.getId(), entry.getEncryptedPassword(), upgraded);
+        } catch (Exception e) {
+            log.warn("Could not upgrade the ciphertext of password entry {}", entry.getId(), e);
         }
     }
 }
@@ -0,0 +1,24 @@
+package com.example.expensetracker.service;
+
+public enum PasswordExportFormat {
+
+    TEXT("text/plain", "txt"),
+    CSV("text/csv", "csv"),
+    JSON("application/json", "json");
+
+    private final String contentType;
+    private final String extension;
+
+    PasswordExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
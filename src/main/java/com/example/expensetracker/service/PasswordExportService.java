@@ -0,0 +1,197 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.model.PasswordEntry;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Writes a decrypted copy of a user's vault. Entries are decrypted on {@link VaultWorkerPool} while
+ * earlier ones are being written, and at most {@code vault.export.window} plaintexts are held at once.
+ * Output order matches the input list.
+ */
+@Service
+public class PasswordExportService {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String[] CSV_HEADERS = {
+            "Name", "Description", "URL", "Username", "Email", "Password",
+            "Date Created", "Date Last Modified", "Modified By"
+    };
+
+    private final PasswordEntryService passwordEntryService;
+    private final ObjectMapper objectMapper;
+    private final VaultWorkerPool workers;
+    private final int window;
+
+    public PasswordExportService(PasswordEntryService passwordEntryService,
+                                 ObjectMapper objectMapper,
+                                 VaultWorkerPool workers,
+                                 @Value("${vault.export.window:64}") int window) {
+        this.passwordEntryService = passwordEntryService;
+        this.objectMapper = objectMapper;
+        this.workers = workers;
+        this.window = window;
+    }
+
+    public void export(List<PasswordEntry> entries, byte[] dataKey, String masterPassword,
+                       PasswordExportFormat format, OutputStream out) throws IOException {
+        EntryWriter writer = switch (format) {
+            case TEXT -> new TextWriter(out);
+            case CSV -> new CsvWriter(out);
+            case JSON -> new JsonWriter(out);
+        };
+
+        Deque<Future<String>> pending = new ArrayDeque<>(window);
+        int next = 0;
+        int written = 0;
+        try {
+            writer.begin();
+            while (written < entries.size()) {
+                while (next < entries.size() && pending.size() < window) {
+                    PasswordEntry entry = entries.get(next++);
+                    pending.add(workers.submit(() -> passwordEntryService.decryptPassword(entry, dataKey, masterPassword)));
+                }
+                writer.write(entries.get(written++), pending.poll().get());
+            }
+            writer.end();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Password export interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to decrypt password: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private static String format(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.format(DATE_FORMAT) : "";
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private interface EntryWriter {
+        void begin() throws IOException;
+
+        void write(PasswordEntry entry, String plainPassword) throws IOException;
+
+        void end() throws IOException;
+    }
+
+    // Same layout as the original text export
+    private static final class TextWriter implements EntryWriter {
+        private final PrintWriter writer;
+
+        private TextWriter(OutputStream out) {
+            this.writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public void begin() {
+            writer.println("Password Manager Export");
+            writer.println("=======================");
+            writer.println();
+        }
+
+        @Override
+        public void write(PasswordEntry entry, String plainPassword) {
+            writer.println("Name: " + entry.getName());
+            writer.println("Description: " + nullToEmpty(entry.getDescription()));
+            writer.println("URL: " + nullToEmpty(entry.getUrl()));
+            writer.println("Username: " + nullToEmpty(entry.getUsername()));
+            writer.println("Email: " + nullToEmpty(entry.getEmail()));
+            writer.println("Password: " + plainPassword);
+            writer.println("Date Created: " + format(entry.getDateCreated()));
+            writer.println("Date Last Modified: " + format(entry.getDateLastModified()));
+            writer.println("Modified By: " + entry.getModifiedBy());
+            writer.println("---");
+            writer.println();
+        }
+
+        @Override
+        public void end() throws IOException {
+            writer.flush();
+            if (writer.checkError()) {
+                throw new IOException("Failed to write password export");
+            }
+        }
+    }
+
+    private static final class CsvWriter implements EntryWriter {
+        private final CSVPrinter printer;
+
+        private CsvWriter(OutputStream out) throws IOException {
+            this.printer = new CSVPrinter(
+                    new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)),
+                    CSVFormat.DEFAULT.builder().setHeader(CSV_HEADERS).build());
+        }
+
+        @Override
+        public void begin() {
+        }
+
+        @Override
+        public void write(PasswordEntry entry, String plainPassword) throws IOException {
+            printer.printRecord(entry.getName(), entry.getDescription(), entry.getUrl(), entry.getUsername(),
+                    entry.getEmail(), plainPassword, format(entry.getDateCreated()),
+                    format(entry.getDateLastModified()), entry.getModifiedBy());
+        }
+
+        @Override
+        public void end() throws IOException {
+            printer.flush();
+        }
+    }
+
+    private final class JsonWriter implements EntryWriter {
+        private final JsonGenerator generator;
+
+        private JsonWriter(OutputStream out) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        }
+
+        @Override
+        public void begin() throws IOException {
+            generator.writeStartArray();
+        }
+
+        @Override
+        public void write(PasswordEntry entry, String plainPassword) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("name", entry.getName());
+            generator.writeStringField("description", entry.getDescription());
+            generator.writeStringField("url", entry.getUrl());
+            generator.writeStringField("username", entry.getUsername());
+            generator.writeStringField("email", entry.getEmail());
+            generator.writeStringField("password", plainPassword);
+            generator.writeStringField("dateCreated", format(entry.getDateCreated()));
+            generator.writeStringField("dateLastModified", format(entry.getDateLastModified()));
+            generator.writeStringField("modifiedBy", entry.getModifiedBy());
+            generator.writeEndObject();
+        }
+
+        @Override
+        public void end() throws IOException {
+            generator.writeEndArray();
+            generator.flush();
+        }
+    }
+}
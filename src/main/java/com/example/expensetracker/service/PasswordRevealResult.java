@@ -0,0 +1,7 @@
+package com.example.expensetracker.service;
+
+import java.util.Map;
+
+// Decrypted passwords and per-entry errors, both keyed by entry id in request order
+public record PasswordRevealResult(Map<Long, String> passwords, Map<Long, String> errors) {
+}
@@ -0,0 +1,134 @@
+package com.example.expensetracker.service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Calendar bucket sizes for expense time series. Weeks are ISO weeks starting on Monday. Buckets are
+ * numbered from the one containing the range start; index works on epoch days without LocalDate.
+ */
+public enum TimeBucket {
+
+    DAY("date") {
+        @Override
+        public LocalDate start(LocalDate date) {
+            return date;
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusDays(1);
+        }
+
+        @Override
+        public int index(int epochDay, int originEpochDay) {
+            return epochDay - originEpochDay;
+        }
+    },
+    WEEK("EXTRACT(ISO_WEEK_YEAR FROM date), EXTRACT(ISO_WEEK FROM date)") {
+        @Override
+        public LocalDate start(LocalDate date) {
+            return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusWeeks(1);
+        }
+
+        // The origin is a Monday
+        @Override
+        public int index(int epochDay, int originEpochDay) {
+            return Math.floorDiv(epochDay - originEpochDay, 7);
+        }
+    },
+    MONTH("EXTRACT(YEAR FROM date), EXTRACT(MONTH FROM date)") {
+        @Override
+        public LocalDate start(LocalDate date) {
+            return date.withDayOfMonth(1);
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusMonths(1);
+        }
+
+        @Override
+        public int index(int epochDay, int originEpochDay) {
+            return ExpenseColumns.epochMonth(epochDay) - ExpenseColumns.epochMonth(originEpochDay);
+        }
+    },
+    QUARTER("EXTRACT(YEAR FROM date), EXTRACT(QUARTER FROM date)") {
+        @Override
+        public LocalDate start(LocalDate date) {
+            return LocalDate.of(date.getYear(), (date.getMonthValue() - 1) / 3 * 3 + 1, 1);
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusMonths(3);
+        }
+
+        @Override
+        public int index(int epochDay, int originEpochDay) {
+            return ExpenseColumns.epochMonth(epochDay) / 3 - ExpenseColumns.epochMonth(originEpochDay) / 3;
+        }
+    },
+    YEAR("EXTRACT(YEAR FROM date)") {
+        @Override
+        public LocalDate start(LocalDate date) {
+            return date.withDayOfYear(1);
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusYears(1);
+        }
+
+        @Override
+        public int index(int epochDay, int originEpochDay) {
+            return ExpenseColumns.epochMonth(epochDay) / 12 - ExpenseColumns.epochMonth(originEpochDay) / 12;
+        }
+    };
+
+    // GROUP BY expressions over the expenses.date column that put the same rows together as index
+    private final String groupBySql;
+
+    TimeBucket(String groupBySql) {
+        this.groupBySql = groupBySql;
+    }
+
+    public String groupBySql() {
+        return groupBySql;
+    }
+
+    public abstract LocalDate start(LocalDate date);
+
+    public abstract LocalDate next(LocalDate start);
+
+    public abstract int index(int epochDay, int originEpochDay);
+
+    // Number of buckets from the one containing from to the one containing to, inclusive
+    public int count(LocalDate from, LocalDate to) {
+        return index((int) to.toEpochDay(), (int) start(from).toEpochDay()) + 1;
+    }
+
+    // Groups expense columns by the bucket of each row's day; rows outside the buckets get -1
+    public ExpenseColumns.Grouping grouping(LocalDate from, LocalDate to) {
+        int origin = (int) start(from).toEpochDay();
+        int buckets = count(from, to);
+        return new ExpenseColumns.Grouping() {
+            @Override
+            public int size(ExpenseColumns columns) {
+                return buckets;
+            }
+
+            @Override
+            public int key(ExpenseColumns columns, int row) {
+                int bucket = index(columns.epochDay(row), origin);
+                return bucket >= 0 && bucket < buckets ? bucket : -1;
+            }
+        };
+    }
+}
@@ -2,6 +2,7 @@ package com.example.expensetracker.service;
 
 import com.example.expensetracker.model.User;
 import com.example.expensetracker.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -14,13 +15,20 @@ import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
+@Timed(value = "service.method", histogram = true)
 public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ExpenseRollupService expenseRollupService;
+    private final ApiTokenService apiTokenService;
+    private final VaultService vaultService;
+    private final ExpenseSearchIndex expenseSearchIndex;
+    private final ExpenseLabelDictionary expenseLabelDictionary;
+    private final ExpenseAnalyticsEngine expenseAnalyticsEngine;
 
     public List<User> getAllUsers() {
-        return userRepository.findAll();
+        return userRepository.findAllWithRoles();
     }
 
     public Optional<User> getUserByUsername(String username) {
@@ -72,7 +80,15 @@ public class UserService {
 
     @Transactional
     public void deleteUser(Long id) {
+        expenseRollupService.deleteRollupsForUser(id);
+        expenseSearchIndex.deleteForUser(id);
+        apiTokenService.deleteTokensForUser(id);
+        vaultService.deleteVaultForUser(id);
         userRepository.deleteById(id);
+        // The user's expenses reference its labels, so they have to be gone first
+        userRepository.flush();
+        expenseLabelDictionary.deleteForUser(id);
+        expenseAnalyticsEngine.invalidateAfterCommit(id);
     }
 
     @Transactional
@@ -0,0 +1,241 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.model.VaultMigration;
+import com.example.expensetracker.repository.PasswordEntryRepository;
+import com.example.expensetracker.repository.UserRepository;
+import com.example.expensetracker.repository.VaultMigrationRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+/**
+ * Moves entries that are still encrypted under the master password over to the vault data key.
+ * Runs in the background after an unlock: entries are re-encrypted in parallel on a bounded pool and
+ * written back in chunks, each chunk committing together with the progress record.
+ *
+ * Every ciphertext says which key it is under, so a run stopped at any point leaves each entry readable
+ * with either the master password or the data key, and the next unlock resumes after the last chunk.
+ */
+@Slf4j
+@Service
+public class VaultMigrationService {
+
+    // Only replaces the ciphertext the job read, so an edit made meanwhile wins
+    private static final String UPDATE_SQL =
+            "UPDATE password_entries SET encrypted_password = ? WHERE id = ? AND encrypted_password = ?";
+
+    private final PasswordEntryRepository passwordEntryRepository;
+    private final VaultMigrationRepository vaultMigrationRepository;
+    private final UserRepository userRepository;
+    private final EncryptionService encryptionService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService jobs;
+    private final ExecutorService workers;
+    private final Map<Long, Future<?>> running = new ConcurrentHashMap<>();
+
+    @Value("${vault.migration.chunk-size:200}")
+    private int chunkSize;
+
+    public VaultMigrationService(PasswordEntryRepository passwordEntryRepository,
+                                 VaultMigrationRepository vaultMigrationRepository,
+                                 UserRepository userRepository,
+                                 EncryptionService encryptionService,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${vault.migration.threads:4}") int threads) {
+        this.passwordEntryRepository = passwordEntryRepository;
+        this.vaultMigrationRepository = vaultMigrationRepository;
+        this.userRepository = userRepository;
+        this.encryptionService = encryptionService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jobs = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("vault-migration-"));
+        this.workers = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("vault-migration-worker-"));
+    }
+
+    // Pending while any entry is still under the master password, including ones a run failed to decrypt
+    public boolean isPending(Long userId) {
+        return passwordEntryRepository.countLegacyEncryptedAfter(userId, 0L) > 0;
+    }
+
+    public Optional<VaultMigration> getMigration(Long userId) {
+        return vaultMigrationRepository.findByUserId(userId);
+    }
+
+    // Waits for the caller's commit so entries never move to a data key whose wrapped copy was rolled back
+    public void startAfterCommit(Long userId, String masterPassword, byte[] dataKey) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            start(userId, masterPassword, dataKey);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    start(userId, masterPassword, dataKey);
+                } else {
+                    Arrays.fill(dataKey, (byte) 0);
+                }
+            }
+        });
+    }
+
+    // A job still running for the user stops at its next chunk commit, when the progress record is gone
+    public void deleteForUser(Long userId) {
+        vaultMigrationRepository.deleteByUserId(userId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void start(Long userId, String masterPassword, byte[] dataKey) {
+        running.compute(userId, (id, existing) -> {
+            if (existing != null && !existing.isDone()) {
+                Arrays.fill(dataKey, (byte) 0);
+                return existing;
+            }
+            return jobs.submit(() -> run(userId, masterPassword, dataKey));
+        });
+    }
+
+    private void run(Long userId, String masterPassword, byte[] dataKey) {
+        try {
+            long afterId = begin(userId);
+            while (true) {
+                List<Object[]> chunk = passwordEntryRepository.findLegacyEncryptedAfter(
+                        userId, afterId, PageRequest.of(0, chunkSize));
+                if (chunk.isEmpty()) {
+                    break;
+                }
+
+                List<Callable<Object[]>> tasks = new ArrayList<>(chunk.size());
+                for (Object[] row : chunk) {
+                    tasks.add(() -> reencrypt(row, masterPassword, dataKey));
+                }
+
+                List<Object[]> updates = new ArrayList<>(chunk.size());
+                int failed = 0;
+                for (Future<Object[]> result : workers.invokeAll(tasks)) {
+                    try {
+                        updates.add(result.get());
+                    } catch (ExecutionException e) {
+                        failed++;
+                    }
+                }
+
+                afterId = (Long) chunk.get(chunk.size() - 1)[0];
+                commitChunk(userId, updates, failed, afterId);
+            }
+            int failed = vaultMigrationRepository.findByUserId(userId)
+                    .map(VaultMigration::getFailedEntries)
+                    .orElse(0);
+            if (failed > 0) {
+                finish(userId, VaultMigration.Status.INCOMPLETE,
+                        failed + " stored password(s) could not be decrypted with the master password");
+            } else {
+                finish(userId, VaultMigration.Status.COMPLETED, null);
+            }
+        } catch (InterruptedException e) {
+            finish(userId, VaultMigration.Status.FAILED, "Interrupted");
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Moving password entries to the vault key failed for user {}", userId, e);
+            finish(userId, VaultMigration.Status.FAILED, e.getMessage());
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+            running.remove(userId);
+        }
+    }
+
+    // Row layout: id, encryptedPassword; returns the UPDATE_SQL arguments
+    private Object[] reencrypt(Object[] row, String masterPassword, byte[] dataKey) throws Exception {
+        String legacy = (String) row[1];
+        String plainPassword = encryptionService.decrypt(legacy, masterPassword);
+        return new Object[]{encryptionService.encryptWithDataKey(plainPassword, dataKey), row[0], legacy};
+    }
+
+    // A failed or interrupted run resumes after its last committed chunk; otherwise start over, which
+    // retries the entries an incomplete run couldn't decrypt
+    private long begin(Long userId) {
+        return transactionTemplate.execute(status -> {
+            VaultMigration migration = vaultMigrationRepository.findByUserId(userId).orElse(null);
+            if (migration == null || migration.getStatus() == VaultMigration.Status.COMPLETED
+                    || migration.getStatus() == VaultMigration.Status.INCOMPLETE) {
+                if (migration == null) {
+                    migration = new VaultMigration();
+                    migration.setUser(userRepository.getReferenceById(userId));
+                }
+                migration.setMigratedEntries(0);
+                migration.setFailedEntries(0);
+                migration.setLastEntryId(0L);
+                migration.setStartedAt(LocalDateTime.now());
+            }
+            updateTotal(userId, migration);
+            migration.setStatus(VaultMigration.Status.RUNNING);
+            migration.setMessage(null);
+            vaultMigrationRepository.save(migration);
+            return migration.getLastEntryId();
+        });
+    }
+
+    private void commitChunk(Long userId, List<Object[]> updates, int failed, Long lastEntryId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            int migrated = 0;
+            if (!updates.isEmpty()) {
+                for (int count : jdbcTemplate.batchUpdate(UPDATE_SQL, updates)) {
+                    if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                        migrated++;
+                    }
+                }
+            }
+            VaultMigration migration = vaultMigrationRepository.findByUserId(userId)
+                    .orElseThrow(() -> new IllegalStateException("Vault migration not found"));
+            migration.setMigratedEntries(migration.getMigratedEntries() + migrated);
+            migration.setFailedEntries(migration.getFailedEntries() + failed);
+            migration.setLastEntryId(lastEntryId);
+            updateTotal(userId, migration);
+            vaultMigrationRepository.save(migration);
+        });
+    }
+
+    // Entries a read re-wrapped meanwhile, before this job got to them or while its update lost the
+    // compare-and-set, are no longer the job's to move, so the total is what it moved or couldn't plus what's left
+    private void updateTotal(Long userId, VaultMigration migration) {
+        long remaining = passwordEntryRepository.countLegacyEncryptedAfter(userId, migration.getLastEntryId());
+        migration.setTotalEntries(
+                migration.getMigratedEntries() + migration.getFailedEntries() + (int) remaining);
+    }
+
+    private void finish(Long userId, VaultMigration.Status status, String message) {
+        transactionTemplate.executeWithoutResult(tx -> vaultMigrationRepository.findByUserId(userId)
+                .ifPresent(migration -> {
+                    updateTotal(userId, migration);
+                    migration.setStatus(status);
+                    migration.setMessage(message);
+                    vaultMigrationRepository.save(migration);
+                    log.info("Vault migration for user {} {}: {} moved, {} failed", userId,
+                            status.name().toLowerCase(), migration.getMigratedEntries(), migration.getFailedEntries());
+                }));
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.model.VaultKey;
+import com.example.expensetracker.repository.UserRepository;
+import com.example.expensetracker.repository.VaultKeyRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.crypto.AEADBadTagException;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Envelope encryption for the password vault. Each user has a random data key that encrypts their
+ * entries; the master password only wraps that key. Unlocking pays for key derivation once and keeps
+ * the data key in {@link VaultSessionStore}, so each reveal afterwards is a single AES operation.
+ */
+@Service
+@RequiredArgsConstructor
+public class VaultService {
+
+    private final VaultKeyRepository vaultKeyRepository;
+    private final UserRepository userRepository;
+    private final EncryptionService encryptionService;
+    private final PasswordEncoder passwordEncoder;
+    private final VaultSessionStore vaultSessionStore;
+    private final VaultMigrationService vaultMigrationService;
+
+    @Transactional
+    public void unlock(Long userId, String sessionId, String masterPassword) throws Exception {
+        byte[] dataKey = openDataKey(userId, masterPassword);
+        if (vaultMigrationService.isPending(userId)) {
+            vaultMigrationService.startAfterCommit(userId, masterPassword, dataKey.clone());
+        }
+        vaultSessionStore.put(userId, sessionId, dataKey);
+    }
+
+    // Entries still under the master password would be lost if it changed, so callers wait for this to clear
+    public boolean isMigrationPending(Long userId) {
+        return vaultMigrationService.isPending(userId);
+    }
+
+    public boolean isUnlocked(Long userId, String sessionId) {
+        return vaultSessionStore.isUnlocked(userId, sessionId);
+    }
+
+    public void lock(Long userId, String sessionId) {
+        vaultSessionStore.remove(userId, sessionId);
+    }
+
+    // Returns a copy of the session's data key; callers zero it when done
+    public byte[] requireKey(Long userId, String sessionId) {
+        return vaultSessionStore.copyKey(userId, sessionId)
+                .orElseThrow(() -> new IllegalStateException("Vault is locked"));
+    }
+
+    // Only the data key is re-wrapped; the entries themselves don't change
+    @Transactional
+    public void changeMasterPassword(Long userId, String oldMasterPassword, String newMasterPassword) throws Exception {
+        if (vaultMigrationService.isPending(userId)) {
+            throw new IllegalStateException("Stored passwords are still being moved to the vault key");
+        }
+        byte[] dataKey = openDataKey(userId, oldMasterPassword);
+        try {
+            VaultKey vaultKey = vaultKeyRepository.findByUserId(userId)
+                    .orElseThrow(() -> new IllegalStateException("Vault key not found"));
+            vaultKey.setWrappedKey(encryptionService.wrapDataKey(dataKey, newMasterPassword));
+            vaultKeyRepository.save(vaultKey);
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
+    @Transactional
+    public void deleteVaultForUser(Long userId) {
+        vaultKeyRepository.deleteByUserId(userId);
+        vaultMigrationService.deleteForUser(userId);
+        vaultSessionStore.removeAll(userId);
+    }
+
+    private byte[] openDataKey(Long userId, String masterPassword) throws Exception {
+        Optional<VaultKey> existing = vaultKeyRepository.findByUserId(userId);
+        byte[] dataKey;
+        if (existing.isPresent()) {
+            try {
+                dataKey = encryptionService.unwrapDataKey(existing.get().getWrappedKey(), masterPassword);
+            } catch (AEADBadTagException e) {
+                throw new IllegalArgumentException("Invalid master password");
+            }
+        } else {
+            dataKey = createDataKey(userId, masterPassword);
+        }
+        return dataKey;
+    }
+
+    private byte[] createDataKey(Long userId, String masterPassword) throws Exception {
+        // No wrapped key to check the password against yet, so fall back to the login hash this once
+        String passwordHash = userRepository.findPasswordById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        if (!passwordEncoder.matches(masterPassword, passwordHash)) {
+            throw new IllegalArgumentException("Invalid master password");
+        }
+
+        byte[] dataKey = encryptionService.generateDataKey();
+        VaultKey vaultKey = new VaultKey();
+        vaultKey.setWrappedKey(encryptionService.wrapDataKey(dataKey, masterPassword));
+        vaultKey.setUser(userRepository.getReferenceById(userId));
+        vaultKeyRepository.save(vaultKey);
+        return dataKey;
+    }
+}
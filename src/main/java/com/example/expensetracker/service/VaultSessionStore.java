@@ -0,0 +1,81 @@
+package com.example.expensetracker.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Unwrapped vault data keys, one per unlocked login session. Entries expire after a short TTL and
+ * the key bytes are zeroed whenever an entry leaves the store, whether by expiry, size eviction or lock.
+ */
+@Component
+public class VaultSessionStore {
+
+    private final Cache<SessionKey, UnlockedVault> cache;
+
+    public VaultSessionStore(@Value("${vault.session.max-size:10000}") long maxSize,
+                             @Value("${vault.session.ttl:5m}") String ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(DurationStyle.detectAndParse(ttl))
+                // Without a scheduler expired keys would linger in memory until the next cache access
+                .scheduler(Scheduler.systemScheduler())
+                .removalListener((SessionKey key, UnlockedVault vault, RemovalCause cause) -> {
+                    if (vault != null) {
+                        vault.destroy();
+                    }
+                })
+                .build();
+    }
+
+    // Takes ownership of dataKey; the caller must not reuse the array
+    public void put(Long userId, String sessionId, byte[] dataKey) {
+        cache.put(new SessionKey(userId, sessionId), new UnlockedVault(dataKey));
+    }
+
+    // Returns a copy the caller should zero when done, so eviction can't change the key mid-use
+    public Optional<byte[]> copyKey(Long userId, String sessionId) {
+        UnlockedVault vault = cache.getIfPresent(new SessionKey(userId, sessionId));
+        return vault == null ? Optional.empty() : Optional.ofNullable(vault.copy());
+    }
+
+    public boolean isUnlocked(Long userId, String sessionId) {
+        return cache.getIfPresent(new SessionKey(userId, sessionId)) != null;
+    }
+
+    public void remove(Long userId, String sessionId) {
+        cache.invalidate(new SessionKey(userId, sessionId));
+    }
+
+    public void removeAll(Long userId) {
+        cache.asMap().keySet().removeIf(key -> key.userId().equals(userId));
+    }
+
+    private record SessionKey(Long userId, String sessionId) {
+    }
+
+    private static final class UnlockedVault {
+        private final byte[] dataKey;
+        private boolean destroyed;
+
+        private UnlockedVault(byte[] dataKey) {
+            this.dataKey = dataKey;
+        }
+
+        private synchronized byte[] copy() {
+            return destroyed ? null : dataKey.clone();
+        }
+
+        private synchronized void destroy() {
+            Arrays.fill(dataKey, (byte) 0);
+            destroyed = true;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.expensetracker.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Bounded pool for request-driven vault decryption (bulk reveal and export). The background
+ * migration in {@link VaultMigrationService} has its own pool so it can't starve these.
+ */
+@Component
+public class VaultWorkerPool {
+
+    private final ExecutorService workers;
+
+    public VaultWorkerPool(@Value("${vault.workers.threads:4}") int threads) {
+        this.workers = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("vault-worker-"));
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        return workers.submit(task);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
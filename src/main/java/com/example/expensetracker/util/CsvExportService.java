@@ -1,13 +1,19 @@
 package com.example.expensetracker.util;
 
 import com.example.expensetracker.model.Expense;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
@@ -18,29 +24,72 @@ public class CsvExportService {
             "ID", "Name", "Amount", "Date", "Category", "Sub Category", "Location", "Card Used"
     };
 
-    public byte[] exportExpensesToCsv(List<Expense> expenses) {
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream();
-             CSVPrinter csvPrinter = new CSVPrinter(
-                     new OutputStreamWriter(out, StandardCharsets.UTF_8),
-                     CSVFormat.DEFAULT.withHeader(CSV_HEADERS))) {
+    private final Counter rowCounter;
+    private final Counter byteCounter;
+
+    public CsvExportService(MeterRegistry meterRegistry) {
+        this.rowCounter = Counter.builder("expenses.export.rows")
+                .baseUnit("rows")
+                .register(meterRegistry);
+        this.byteCounter = Counter.builder("expenses.export.bytes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
 
+    public byte[] exportExpensesToCsv(List<Expense> expenses) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CSVPrinter csvPrinter = createExpensePrinter(out)) {
             for (Expense expense : expenses) {
-                csvPrinter.printRecord(
-                        expense.getId(),
-                        expense.getName(),
-                        expense.getAmount(),
-                        expense.getDate(),
-                        expense.getCategory(),
-                        expense.getSubCategory(),
-                        expense.getLocation(),
-                        expense.getCardUsed()
-                );
+                printExpense(csvPrinter, expense);
             }
-
             csvPrinter.flush();
-            return out.toByteArray();
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             throw new RuntimeException("Failed to export expenses to CSV", e);
         }
+        return out.toByteArray();
+    }
+
+    public CSVPrinter createExpensePrinter(OutputStream out) throws IOException {
+        return new CSVPrinter(
+                new BufferedWriter(new OutputStreamWriter(new CountingOutputStream(out), StandardCharsets.UTF_8)),
+                CSVFormat.DEFAULT.builder().setHeader(CSV_HEADERS).build());
+    }
+
+    public void printExpense(CSVPrinter csvPrinter, Expense expense) {
+        try {
+            csvPrinter.printRecord(
+                    expense.getId(),
+                    expense.getName(),
+                    expense.getAmount(),
+                    expense.getDate(),
+                    expense.getCategory(),
+                    expense.getSubCategory(),
+                    expense.getLocation(),
+                    expense.getCardUsed()
+            );
+            rowCounter.increment();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Counts bytes as the writer flushes them, so streamed exports are measured without buffering
+    private final class CountingOutputStream extends FilterOutputStream {
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            byteCounter.increment();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            byteCounter.increment(len);
+        }
     }
 }
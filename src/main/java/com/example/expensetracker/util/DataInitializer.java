@@ -2,8 +2,8 @@ package com.example.expensetracker.util;
 
 import com.example.expensetracker.model.Expense;
 import com.example.expensetracker.model.User;
-import com.example.expensetracker.repository.ExpenseRepository;
 import com.example.expensetracker.repository.UserRepository;
+import com.example.expensetracker.service.ExpenseService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -18,8 +18,8 @@ import java.util.Set;
 public class DataInitializer implements CommandLineRunner {
 
     private final UserRepository userRepository;
-    private final ExpenseRepository expenseRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ExpenseService expenseService;
 
     @Override
     public void run(String... args) {
@@ -60,8 +60,7 @@ public class DataInitializer implements CommandLineRunner {
         groceries.setSubCategory("Groceries");
         groceries.setLocation("Whole Foods");
         groceries.setCardUsed("Visa");
-        groceries.setUser(user);
-        expenseRepository.save(groceries);
+        expenseService.saveExpense(groceries, user.getId());
 
         // Restaurant
         Expense restaurant = new Expense();
@@ -72,8 +71,7 @@ public class DataInitializer implements CommandLineRunner {
         restaurant.setSubCategory("Restaurant");
         restaurant.setLocation("Italian Bistro");
         restaurant.setCardUsed("Mastercard");
-        restaurant.setUser(user);
-        expenseRepository.save(restaurant);
+        expenseService.saveExpense(restaurant, user.getId());
 
         // Utilities
         Expense utilities = new Expense();
@@ -84,8 +82,7 @@ public class DataInitializer implements CommandLineRunner {
         utilities.setSubCategory("Electricity");
         utilities.setLocation("Home");
         utilities.setCardUsed("Bank Transfer");
-        utilities.setUser(user);
-        expenseRepository.save(utilities);
+        expenseService.saveExpense(utilities, user.getId());
 
         // Transportation
         Expense transportation = new Expense();
@@ -96,8 +93,7 @@ public class DataInitializer implements CommandLineRunner {
         transportation.setSubCategory("Fuel");
         transportation.setLocation("Shell Gas Station");
         transportation.setCardUsed("Amex");
-        transportation.setUser(user);
-        expenseRepository.save(transportation);
+        expenseService.saveExpense(transportation, user.getId());
 
         // Entertainment
         Expense entertainment = new Expense();
@@ -108,7 +104,6 @@ public class DataInitializer implements CommandLineRunner {
         entertainment.setSubCategory("Movies");
         entertainment.setLocation("AMC Theater");
         entertainment.setCardUsed("Visa");
-        entertainment.setUser(user);
-        expenseRepository.save(entertainment);
+        expenseService.saveExpense(entertainment, user.getId());
     }
 }
@@ -0,0 +1,116 @@
+package com.example.expensetracker.util;
+
+import com.example.expensetracker.model.ExpenseLabel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Expenses and rollups used to store category, sub category and card as text. Moves the text of
+ * databases created before expense_labels existed into that table, points the rows at it and drops
+ * the text columns. Every step commits on its own and can be repeated, so an interrupted migration
+ * finishes on the next start. Rollups are emptied instead of converted; ExpenseRollupRunner rebuilds
+ * them from the expenses.
+ *
+ * Runs as soon as Hibernate has updated the schema, so it is done before the startup work that reads
+ * the label ids (rollup and search index rebuilds) and before the web server starts.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+public class ExpenseLabelMigrationRunner implements InitializingBean {
+
+    private static final String[][] LABEL_COLUMNS = {
+            {"category", "category_id"},
+            {"sub_category", "sub_category_id"},
+            {"card_used", "card_id"}
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public ExpenseLabelMigrationRunner(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (hasColumn("EXPENSES", "CATEGORY")) {
+            migrateExpenses();
+        }
+        if (hasColumn("EXPENSE_ROLLUPS", "CATEGORY")) {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update("DELETE FROM expense_rollups");
+                jdbcTemplate.execute("DROP INDEX IF EXISTS idx_expense_rollups_key");
+                dropColumns("expense_rollups");
+            });
+            log.info("Dropped the text label columns of expense_rollups; the rollups will be rebuilt");
+        }
+    }
+
+    private void migrateExpenses() {
+        migrate(ExpenseLabel.Kind.CATEGORY, "category", "category_id");
+        migrate(ExpenseLabel.Kind.SUB_CATEGORY, "sub_category", "sub_category_id");
+        migrate(ExpenseLabel.Kind.CARD, "card_used", "card_id");
+
+        verifyExpenses();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("DROP INDEX IF EXISTS idx_expenses_user_category");
+            jdbcTemplate.execute("DROP INDEX IF EXISTS idx_expenses_user_card");
+            dropColumns("expenses");
+        });
+    }
+
+    // Expenses without an owner have nowhere to keep a label and lose it
+    private void migrate(ExpenseLabel.Kind kind, String nameColumn, String idColumn) {
+        transactionTemplate.executeWithoutResult(status -> {
+            int labels = jdbcTemplate.update("INSERT INTO expense_labels (user_id, kind, name) "
+                    + "SELECT DISTINCT e.user_id, ?, e." + nameColumn + " FROM expenses e "
+                    + "WHERE e.user_id IS NOT NULL AND TRIM(e." + nameColumn + ") <> '' "
+                    + "AND NOT EXISTS (SELECT 1 FROM expense_labels l "
+                    + "WHERE l.user_id = e.user_id AND l.kind = ? AND l.name = e." + nameColumn + ")",
+                    kind.name(), kind.name());
+            int expenses = jdbcTemplate.update("UPDATE expenses e SET " + idColumn + " = "
+                    + "(SELECT l.id FROM expense_labels l "
+                    + "WHERE l.user_id = e.user_id AND l.kind = ? AND l.name = e." + nameColumn + ") "
+                    + "WHERE e." + idColumn + " IS NULL AND e.user_id IS NOT NULL AND TRIM(e." + nameColumn + ") <> ''",
+                    kind.name());
+            log.info("Migrated {} expenses to {} {} labels", expenses, labels, kind);
+        });
+    }
+
+    // The text columns are only dropped once every owned expense with a label has its id
+    private void verifyExpenses() {
+        for (String[] columns : LABEL_COLUMNS) {
+            Integer unmapped = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM expenses "
+                    + "WHERE user_id IS NOT NULL AND TRIM(" + columns[0] + ") <> '' AND " + columns[1] + " IS NULL",
+                    Integer.class);
+            if (unmapped != null && unmapped > 0) {
+                throw new IllegalStateException(unmapped + " expenses have a " + columns[0]
+                        + " but no " + columns[1] + "; not dropping the text columns");
+            }
+            Integer ownerless = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM expenses "
+                    + "WHERE user_id IS NULL AND TRIM(" + columns[0] + ") <> ''", Integer.class);
+            if (ownerless != null && ownerless > 0) {
+                log.warn("Dropping the {} of {} expenses without an owner", columns[0], ownerless);
+            }
+        }
+    }
+
+    private void dropColumns(String table) {
+        for (String[] columns : LABEL_COLUMNS) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " DROP COLUMN IF EXISTS " + columns[0]);
+        }
+    }
+
+    private boolean hasColumn(String table, String column) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE TABLE_NAME = ? AND COLUMN_NAME = ?", Integer.class, table, column);
+        return count != null && count > 0;
+    }
+}
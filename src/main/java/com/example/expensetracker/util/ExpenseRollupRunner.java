@@ -0,0 +1,53 @@
+package com.example.expensetracker.util;
+
+import com.example.expensetracker.repository.ExpenseRepository;
+import com.example.expensetracker.repository.ExpenseRollupRepository;
+import com.example.expensetracker.service.ExpenseRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Keeps the expense_rollups table usable across deployments.
+ * Start with --rebuild-rollups to regenerate it from the expenses table and
+ * --verify-rollups to compare it against the expenses table.
+ * Runs once all beans exist but before the web server starts, so no request writes rollups meanwhile.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExpenseRollupRunner implements SmartInitializingSingleton {
+
+    private final ExpenseRollupService expenseRollupService;
+    private final ExpenseRollupRepository expenseRollupRepository;
+    private final ExpenseRepository expenseRepository;
+    // Only SpringApplication registers the arguments; ExpenseTrackerApplication.main also starts a plain context
+    private final ObjectProvider<ApplicationArguments> args;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        expenseRollupService.ensureUniqueKey();
+
+        // Databases created before the rollup table existed need a one-off backfill
+        boolean needsBackfill = expenseRollupRepository.count() == 0 && expenseRepository.count() > 0;
+
+        if (hasOption("rebuild-rollups") || needsBackfill) {
+            expenseRollupService.rebuildAll();
+        }
+
+        if (hasOption("verify-rollups")) {
+            List<String> mismatches = expenseRollupService.verify();
+            mismatches.forEach(mismatch -> log.warn("Rollup mismatch {}", mismatch));
+        }
+    }
+
+    private boolean hasOption(String name) {
+        ApplicationArguments arguments = args.getIfAvailable();
+        return arguments != null && arguments.containsOption(name);
+    }
+}
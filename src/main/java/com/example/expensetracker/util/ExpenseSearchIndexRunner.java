@@ -0,0 +1,42 @@
+package com.example.expensetracker.util;
+
+import com.example.expensetracker.repository.ExpenseRepository;
+import com.example.expensetracker.service.ExpenseSearchIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds the expense search index for databases created before it existed.
+ * Start with --rebuild-search-index to regenerate it from the expenses table.
+ * Runs once all beans exist but before the web server starts, so no request indexes expenses meanwhile.
+ */
+@Component
+@RequiredArgsConstructor
+public class ExpenseSearchIndexRunner implements SmartInitializingSingleton {
+
+    private final ExpenseSearchIndex expenseSearchIndex;
+    private final ExpenseRepository expenseRepository;
+    // Only SpringApplication registers the arguments; ExpenseTrackerApplication.main also starts a plain context
+    private final ObjectProvider<ApplicationArguments> args;
+
+    @Value("${expenses.search.rebuild-batch-size:1000}")
+    private int batchSize;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        boolean needsBackfill = expenseSearchIndex.isEmpty() && expenseRepository.count() > 0;
+
+        if (hasOption("rebuild-search-index") || needsBackfill) {
+            expenseSearchIndex.rebuildAll(batchSize);
+        }
+    }
+
+    private boolean hasOption(String name) {
+        ApplicationArguments arguments = args.getIfAvailable();
+        return arguments != null && arguments.containsOption(name);
+    }
+}
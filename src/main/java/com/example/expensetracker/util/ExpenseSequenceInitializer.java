@@ -0,0 +1,37 @@
+package com.example.expensetracker.util;
+
+import com.example.expensetracker.model.Expense;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Expense ids used to come from an identity column. When a database from then has rows above the
+ * block the sequence would hand out next, moves the sequence past them once. The sequence only ever
+ * moves forward, and a sequence that is already ahead is left alone, so blocks that Hibernate's pooled
+ * optimizer or another instance holds stay valid. Runs before the web server starts.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExpenseSequenceInitializer implements SmartInitializingSingleton {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM expenses", Long.class);
+        Long nextValue = jdbcTemplate.queryForObject("SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES "
+                + "WHERE SEQUENCE_NAME = 'EXPENSES_SEQ'", Long.class);
+        // A pooled block ends at the value taken from the sequence and starts ID_ALLOCATION_SIZE - 1 below it
+        if (maxId == null || nextValue == null || nextValue - Expense.ID_ALLOCATION_SIZE + 1 > maxId) {
+            return;
+        }
+
+        long restartWith = maxId + Expense.ID_ALLOCATION_SIZE;
+        jdbcTemplate.execute("ALTER SEQUENCE expenses_seq RESTART WITH " + restartWith);
+        log.info("Moved expenses_seq from {} to {}, past the highest expense id {}", nextValue, restartWith, maxId);
+    }
+}
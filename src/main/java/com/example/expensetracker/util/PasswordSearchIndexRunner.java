@@ -0,0 +1,43 @@
+package com.example.expensetracker.util;
+
+import com.example.expensetracker.service.PasswordEntryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Password entries saved before the search index existed have no search terms
+ * and wouldn't match any filter; index them once at startup.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PasswordSearchIndexRunner implements ApplicationRunner {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final PasswordEntryService passwordEntryService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long indexed = 0;
+        long afterId = 0;
+        List<Long> batch;
+        do {
+            // Entries whose fields yield no terms stay unindexed, so paging by id is what guarantees progress
+            batch = passwordEntryService.indexMissingSearchTerms(afterId, BATCH_SIZE);
+            if (!batch.isEmpty()) {
+                afterId = batch.get(batch.size() - 1);
+            }
+            indexed += batch.size();
+        } while (batch.size() == BATCH_SIZE);
+
+        if (indexed > 0) {
+            log.info("Indexed search terms for {} password entries", indexed);
+        }
+    }
+}
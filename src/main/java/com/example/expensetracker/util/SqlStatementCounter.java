@@ -0,0 +1,91 @@
+package com.example.expensetracker.util;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread while a scope is open.
+ * Scopes nest, so a test can wrap a whole MockMvc call while the per-request budget filter
+ * opens its own scope inside it. Plain JDBC (JdbcTemplate) bypasses Hibernate and is not counted.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+
+    @Override
+    public String inspect(String sql) {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            String shape = shape(sql);
+            for (; scope != null; scope = scope.parent) {
+                scope.record(shape);
+            }
+        }
+        return sql;
+    }
+
+    public static Scope open() {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    // Values are already bound as ?, so only whitespace and IN-list lengths differ between runs of one query
+    static String shape(String sql) {
+        String collapsed = WHITESPACE.matcher(sql).replaceAll(" ").trim();
+        return IN_LIST.matcher(collapsed).replaceAll("(?)");
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private final Scope parent;
+        private final Map<String, Integer> shapes = new LinkedHashMap<>();
+        private int count;
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        private void record(String shape) {
+            count++;
+            shapes.merge(shape, 1, Integer::sum);
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public Map<String, Integer> shapes() {
+            return Collections.unmodifiableMap(shapes);
+        }
+
+        public Optional<Map.Entry<String, Integer>> mostRepeated() {
+            return shapes.entrySet().stream().max(Map.Entry.comparingByValue());
+        }
+
+        public String describe() {
+            return shapes.entrySet().stream()
+                    .sorted(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()))
+                    .map(entry -> "  " + entry.getValue() + "x " + entry.getKey())
+                    .collect(Collectors.joining("\n"));
+        }
+
+        @Override
+        public void close() {
+            if (parent == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(parent);
+            }
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.example.expensetracker.util;
+
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.PasswordEntry;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.model.VaultKey;
+import com.example.expensetracker.repository.PasswordEntrySpecifications;
+import com.example.expensetracker.repository.UserRepository;
+import com.example.expensetracker.repository.VaultKeyRepository;
+import com.example.expensetracker.service.EncryptionService;
+import com.example.expensetracker.service.ExpenseLabelDictionary;
+import com.example.expensetracker.service.ExpenseRollupService;
+import com.example.expensetracker.service.ExpenseSearchIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Fills the database with a large, reproducible data set for load tests and benchmarks. Runs at
+ * startup with the "loadtest" profile. Every user is generated from its own seed derived from
+ * synthetic.seed and the user's index, so a run that was stopped resumes with the first missing
+ * user and ends up with the same data as an uninterrupted one. Each user commits in one transaction.
+ * All generated users log in, and unlock their vault, with synthetic.password.
+ */
+@Slf4j
+@Component
+@Profile("loadtest")
+// After ExpenseSequenceInitializer; the rollups are rebuilt at the end of run
+@Order(0)
+public class SyntheticDataGenerator implements ApplicationRunner {
+
+    private static final String USERNAME_FORMAT = "loadtest%06d";
+
+    private static final String EXPENSE_SQL = "INSERT INTO expenses (id, name, amount, date, category_id, "
+            + "sub_category_id, location, card_id, user_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String PASSWORD_ENTRY_SQL = "INSERT INTO password_entries (name, description, url, username, "
+            + "email, encrypted_password, date_created, date_last_modified, modified_by, user_id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SEARCH_TERM_SQL = "INSERT INTO password_entry_terms (entry_id, term) VALUES (?, ?)";
+
+    // Relative frequency and typical amount per (category, subCategory), loosely shaped like card statement data
+    private static final List<Kind> KINDS = List.of(
+            new Kind("Food", "Groceries", 22, 6_500, new String[]{"Weekly Groceries", "Groceries", "Farmers Market"},
+                    new String[]{"Whole Foods", "Trader Joe's", "Safeway", "Costco"}),
+            new Kind("Food", "Restaurant", 14, 3_500, new String[]{"Dinner", "Lunch", "Dinner with Friends"},
+                    new String[]{"Italian Bistro", "Sushi Bar", "Taco Stand", "Steakhouse"}),
+            new Kind("Food", "Coffee", 12, 550, new String[]{"Coffee", "Latte"},
+                    new String[]{"Starbucks", "Blue Bottle", "Corner Cafe"}),
+            new Kind("Transportation", "Fuel", 8, 4_500, new String[]{"Gas"},
+                    new String[]{"Shell Gas Station", "Chevron", "BP"}),
+            new Kind("Transportation", "Rideshare", 5, 2_200, new String[]{"Uber Ride", "Lyft Ride"},
+                    new String[]{"Downtown", "Airport"}),
+            new Kind("Transportation", "Public Transit", 5, 275, new String[]{"Metro Card", "Bus Fare"},
+                    new String[]{"Metro", "City Bus"}),
+            new Kind("Utilities", "Electricity", 2, 12_000, new String[]{"Electricity Bill"}, new String[]{"Home"}),
+            new Kind("Utilities", "Internet", 2, 7_000, new String[]{"Internet Bill"}, new String[]{"Home"}),
+            new Kind("Utilities", "Phone", 2, 6_000, new String[]{"Phone Bill"}, new String[]{"Home"}),
+            new Kind("Housing", "Rent", 1, 180_000, new String[]{"Rent"}, new String[]{"Home"}),
+            new Kind("Entertainment", "Movies", 4, 2_400, new String[]{"Movie Tickets"},
+                    new String[]{"AMC Theater", "Regal Cinema"}),
+            new Kind("Entertainment", "Streaming", 3, 1_500, new String[]{"Netflix", "Spotify"},
+                    new String[]{"Online"}),
+            new Kind("Shopping", "Clothing", 5, 6_000, new String[]{"Clothes", "Shoes"},
+                    new String[]{"Mall", "Online"}),
+            new Kind("Shopping", "Electronics", 2, 25_000, new String[]{"Headphones", "Laptop Accessories"},
+                    new String[]{"Best Buy", "Online"}),
+            new Kind("Health", "Pharmacy", 4, 2_000, new String[]{"Pharmacy"}, new String[]{"CVS", "Walgreens"}),
+            new Kind("Health", "Doctor", 1, 15_000, new String[]{"Doctor Visit"}, new String[]{"Clinic"}),
+            new Kind("Travel", "Hotel", 1, 22_000, new String[]{"Hotel Stay"}, new String[]{"Marriott", "Hilton"}),
+            new Kind("Travel", "Flights", 1, 35_000, new String[]{"Flight"}, new String[]{"Airport"})
+    );
+    private static final int[] CUMULATIVE_WEIGHTS = cumulativeWeights();
+
+    private static final String[] CARDS = {"Visa", "Mastercard", "Amex", "Discover", "Bank Transfer"};
+    private static final String[] SITES = {"github", "google", "netflix", "amazon", "slack", "dropbox",
+            "linkedin", "paypal", "chase", "spotify", "aws", "atlassian"};
+
+    private final UserRepository userRepository;
+    private final VaultKeyRepository vaultKeyRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final EncryptionService encryptionService;
+    private final ExpenseRollupService expenseRollupService;
+    private final ExpenseSearchIndex expenseSearchIndex;
+    private final ExpenseLabelDictionary expenseLabelDictionary;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${synthetic.users:20000}")
+    private int users;
+
+    @Value("${synthetic.expenses-per-user:500}")
+    private int expensesPerUser;
+
+    @Value("${synthetic.passwords-per-user:20}")
+    private int passwordsPerUser;
+
+    @Value("${synthetic.years:5}")
+    private int years;
+
+    // Fixed rather than today, so the same seed gives the same dates on every run
+    @Value("${synthetic.end-date:2025-12-31}")
+    private String endDateText;
+
+    @Value("${synthetic.seed:42}")
+    private long seed;
+
+    @Value("${synthetic.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${synthetic.password:loadtest123}")
+    private String password;
+
+    public SyntheticDataGenerator(UserRepository userRepository,
+                                  VaultKeyRepository vaultKeyRepository,
+                                  PasswordEncoder passwordEncoder,
+                                  EncryptionService encryptionService,
+                                  ExpenseRollupService expenseRollupService,
+                                  ExpenseSearchIndex expenseSearchIndex,
+                                  ExpenseLabelDictionary expenseLabelDictionary,
+                                  JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.vaultKeyRepository = vaultKeyRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.encryptionService = encryptionService;
+        this.expenseRollupService = expenseRollupService;
+        this.expenseSearchIndex = expenseSearchIndex;
+        this.expenseLabelDictionary = expenseLabelDictionary;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        int first = 0;
+        while (first < users && userRepository.existsByUsername(String.format(USERNAME_FORMAT, first))) {
+            first++;
+        }
+        if (first == users) {
+            log.info("Synthetic data set of {} users is already complete", users);
+            return;
+        }
+
+        LocalDate endDate = LocalDate.parse(endDateText);
+
+        // BCrypt and PBKDF2 are deliberately slow, so every user shares one login hash and one wrapped data key
+        String passwordHash = passwordEncoder.encode(password);
+        byte[] dataKey = encryptionService.generateDataKey();
+        String wrappedKey = encryptionService.wrapDataKey(dataKey, password);
+
+        log.info("Generating synthetic users {}-{} (seed {})", first, users - 1, seed);
+        long started = System.currentTimeMillis();
+        long expenses = 0;
+        for (int index = first; index < users; index++) {
+            int userIndex = index;
+            expenses += transactionTemplate.execute(
+                    status -> generateUser(userIndex, endDate, passwordHash, wrappedKey, dataKey));
+            if ((index + 1) % 1000 == 0 || index + 1 == users) {
+                long elapsed = Math.max(1, System.currentTimeMillis() - started);
+                log.info("Generated {} users, {} expenses ({} expenses/s)",
+                        index + 1 - first, expenses, expenses * 1000 / elapsed);
+            }
+        }
+        Arrays.fill(dataKey, (byte) 0);
+
+        expenseRollupService.rebuildAll();
+    }
+
+    private long generateUser(int index, LocalDate endDate, String passwordHash, String wrappedKey, byte[] dataKey) {
+        SplittableRandom random = new SplittableRandom(seed * 1_000_003L + index);
+        String username = String.format(USERNAME_FORMAT, index);
+
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword(passwordHash);
+        user.setEmail(username + "@example.com");
+        user.setRoles(Set.of("ROLE_USER"));
+        user = userRepository.save(user);
+
+        VaultKey vaultKey = new VaultKey();
+        vaultKey.setWrappedKey(wrappedKey);
+        vaultKey.setUser(user);
+        vaultKeyRepository.save(vaultKey);
+
+        long expenses = insertExpenses(user.getId(), endDate, random);
+        insertPasswordEntries(user.getId(), username, endDate, random, dataKey);
+        return expenses;
+    }
+
+    private long insertExpenses(Long userId, LocalDate endDate, SplittableRandom random) {
+        // Log-normal around the configured mean: most users have a few hundred rows, a few have many thousands
+        double sigma = 1.0;
+        long count = Math.max(1, Math.round(expensesPerUser * Math.exp(sigma * random.nextGaussian() - sigma * sigma / 2)));
+
+        String[] wallet = new String[1 + random.nextInt(3)];
+        for (int i = 0; i < wallet.length; i++) {
+            wallet[i] = CARDS[random.nextInt(CARDS.length)];
+        }
+        int days = years * 365;
+
+        List<Expense> batch = new ArrayList<>(batchSize);
+        long nextId = 0;
+        long lastId = -1;
+        for (long i = 0; i < count; i++) {
+            if (nextId > lastId) {
+                // Takes ids the same way Hibernate's pooled optimizer does, so later saves can't collide with them
+                lastId = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR expenses_seq", Long.class);
+                nextId = lastId - Expense.ID_ALLOCATION_SIZE + 1;
+            }
+
+            Kind kind = pick(random);
+            long cents = Math.max(1, Math.round(kind.medianCents() * Math.exp(0.5 * random.nextGaussian())));
+            // sqrt skews dates towards the end of the range, as spending tends to grow over time
+            LocalDate date = endDate.minusDays((long) (days * (1 - Math.sqrt(random.nextDouble()))));
+            String card = random.nextInt(10) == 0 ? null : wallet[random.nextInt(wallet.length)];
+
+            Expense expense = new Expense();
+            expense.setId(nextId++);
+            expense.setName(kind.names()[random.nextInt(kind.names().length)]);
+            expense.setAmount(BigDecimal.valueOf(cents, 2));
+            expense.setDate(date);
+            expense.setCategory(kind.category());
+            expense.setSubCategory(kind.subCategory());
+            expense.setLocation(kind.locations()[random.nextInt(kind.locations().length)]);
+            expense.setCardUsed(card);
+            batch.add(expense);
+            if (batch.size() == batchSize) {
+                flushExpenses(userId, batch);
+            }
+        }
+        flushExpenses(userId, batch);
+        return count;
+    }
+
+    private void flushExpenses(Long userId, List<Expense> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        expenseLabelDictionary.encode(userId, batch);
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (Expense expense : batch) {
+            rows.add(new Object[]{expense.getId(), expense.getName(), expense.getAmount(), expense.getDate(),
+                    expense.getCategoryId(), expense.getSubCategoryId(), expense.getLocation(), expense.getCardId(),
+                    userId});
+        }
+        jdbcTemplate.batchUpdate(EXPENSE_SQL, rows);
+        expenseSearchIndex.add(userId, batch);
+        batch.clear();
+    }
+
+    private void insertPasswordEntries(Long userId, String username, LocalDate endDate,
+                                       SplittableRandom random, byte[] dataKey) {
+        if (passwordsPerUser <= 0) {
+            return;
+        }
+        List<PasswordEntry> entries = new ArrayList<>(passwordsPerUser);
+        List<Object[]> rows = new ArrayList<>(passwordsPerUser);
+        for (int i = 0; i < passwordsPerUser; i++) {
+            String site = SITES[random.nextInt(SITES.length)];
+            PasswordEntry entry = new PasswordEntry();
+            entry.setName(Character.toUpperCase(site.charAt(0)) + site.substring(1) + " " + (i + 1));
+            entry.setDescription("Synthetic " + site + " account");
+            entry.setUrl("https://www." + site + ".com");
+            entry.setUsername(username + "_" + site);
+            entry.setEmail(username + "@example.com");
+            entries.add(entry);
+
+            LocalDateTime created = endDate.atStartOfDay().minusDays(random.nextInt(years * 365));
+            try {
+                rows.add(new Object[]{entry.getName(), entry.getDescription(), entry.getUrl(), entry.getUsername(),
+                        entry.getEmail(), encryptionService.encryptWithDataKey(randomPassword(random), dataKey),
+                        created, created, username, userId});
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to encrypt synthetic password", e);
+            }
+        }
+        jdbcTemplate.batchUpdate(PASSWORD_ENTRY_SQL, rows);
+
+        // The user is new in this transaction, so its entries come back in insertion order
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM password_entries WHERE user_id = ? ORDER BY id", Long.class, userId);
+        List<Object[]> terms = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Long id = ids.get(i);
+            PasswordEntrySpecifications.searchTerms(entries.get(i)).forEach(term -> terms.add(new Object[]{id, term}));
+        }
+        jdbcTemplate.batchUpdate(SEARCH_TERM_SQL, terms);
+    }
+
+    private static Kind pick(SplittableRandom random) {
+        int target = random.nextInt(CUMULATIVE_WEIGHTS[CUMULATIVE_WEIGHTS.length - 1]);
+        int i = Arrays.binarySearch(CUMULATIVE_WEIGHTS, target + 1);
+        return KINDS.get(i >= 0 ? i : -i - 1);
+    }
+
+    private static int[] cumulativeWeights() {
+        int[] cumulative = new int[KINDS.size()];
+        int total = 0;
+        for (int i = 0; i < cumulative.length; i++) {
+            total += KINDS.get(i).weight();
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+
+    private static String randomPassword(SplittableRandom random) {
+        StringBuilder password = new StringBuilder(16);
+        for (int i = 0; i < 16; i++) {
+            password.append((char) ('!' + random.nextInt(94)));
+        }
+        return password.toString();
+    }
+
+    private record Kind(String category, String subCategory, int weight, long medianCents,
+                        String[] names, String[] locations) {
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.expensetracker.controller;
+
+import com.example.expensetracker.security.UserDetailsServiceImpl;
+import com.example.expensetracker.service.DashboardCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.example.expensetracker.util.SqlStatementAssertions.assertStatementCount;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Exact Hibernate statement counts per endpoint, so an N+1 or an extra lookup shows up as a failure.
+ * Label names are resolved through JdbcTemplate and aren't counted. Runs against the DataInitializer
+ * seed data, where "user" has expenses but no vault entries.
+ */
+@SpringBootTest(properties = "sql.budget.fail-on-exceed=true")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+class EndpointQueryCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private DashboardCache dashboardCache;
+
+    private UserDetails principal;
+
+    @BeforeEach
+    void setUp() {
+        principal = userDetailsService.loadUserByUsername("user");
+        dashboardCache.invalidateAll();
+    }
+
+    // /expenses and /expenses/api: the keyset page. /dashboard: the rollup sums.
+    // /passwords: the entry page (no count query while it isn't full) and the migration status.
+    @ParameterizedTest
+    @CsvSource({"/expenses, 1", "/expenses/api, 1", "/dashboard, 1", "/passwords, 2"})
+    void endpointRunsExpectedStatements(String path, int statements) throws Exception {
+        assertStatementCount(statements,
+                () -> mockMvc.perform(get(path).with(user(principal))).andExpect(status().isOk()));
+    }
+
+    @Test
+    void cachedDashboardRunsNoStatements() throws Exception {
+        mockMvc.perform(get("/dashboard").with(user(principal))).andExpect(status().isOk());
+
+        assertStatementCount(0,
+                () -> mockMvc.perform(get("/dashboard").with(user(principal))).andExpect(status().isOk()));
+    }
+
+    // The expenses with their owners, then the owners' eager roles in one batch
+    @Test
+    void adminViewFetchesOwnersWithExpenses() throws Exception {
+        UserDetails admin = userDetailsService.loadUserByUsername("admin");
+
+        assertStatementCount(2,
+                () -> mockMvc.perform(get("/expenses/admin/all").with(user(admin))).andExpect(status().isOk()));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.expensetracker.controller;
+
+import com.example.expensetracker.security.UserDetailsServiceImpl;
+import com.example.expensetracker.util.SqlStatementCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The principal in the session carries the user id, so the hot read paths must not query the
+ * users table. Runs as the seeded "user" account from DataInitializer.
+ */
+@SpringBootTest(properties = "sql.budget.fail-on-exceed=true")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+class PrincipalQueryTest {
+
+    private static final Pattern USERS_TABLE = Pattern.compile("\\b(from|join) users\\b", Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    private UserDetails principal;
+
+    @BeforeEach
+    void loadPrincipal() {
+        principal = userDetailsService.loadUserByUsername("user");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/expenses", "/expenses/api", "/dashboard", "/passwords"})
+    void readPathRunsNoUserQuery(String path) throws Exception {
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            mockMvc.perform(get(path).with(user(principal))).andExpect(status().isOk());
+
+            List<String> userQueries = scope.shapes().keySet().stream()
+                    .filter(shape -> USERS_TABLE.matcher(shape).find())
+                    .toList();
+            assertThat(userQueries).as("user table queries for " + path).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.expensetracker.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks with EXPLAIN that the dashboard, search and password list predicates are answered from the
+ * composite indexes declared on the entities rather than by scanning the table.
+ */
+@DataJpaTest
+class IndexUsageTest {
+
+    private static final int USERS = 20;
+    private static final int EXPENSES_PER_USER = 200;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void insertRows() {
+        List<Object[]> expenses = new ArrayList<>();
+        List<Object[]> entries = new ArrayList<>();
+        long expenseId = 0;
+        for (long user = 1; user <= USERS; user++) {
+            jdbcTemplate.update("INSERT INTO users (id, username, password, email) VALUES (?, ?, ?, ?)",
+                    user, "user" + user, "hash", "user" + user + "@example.com");
+            int category = label(user, "CATEGORY", "Food");
+            int subCategory = label(user, "SUB_CATEGORY", "Groceries");
+            int card = label(user, "CARD", "Visa");
+            for (int i = 0; i < EXPENSES_PER_USER; i++) {
+                expenses.add(new Object[]{++expenseId, "Expense " + i, new BigDecimal("12.50"),
+                        Date.valueOf(LocalDate.of(2020, 1, 1).plusDays(i * 7L)), category, subCategory, card, user});
+                entries.add(new Object[]{"Entry " + i, "secret", user});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO expenses (id, name, amount, date, category_id, sub_category_id, "
+                + "card_id, user_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", expenses);
+        jdbcTemplate.batchUpdate("INSERT INTO password_entries (name, encrypted_password, date_created, "
+                + "date_last_modified, modified_by, user_id) VALUES (?, ?, NOW(), NOW(), 'test', ?)", entries);
+    }
+
+    // As ExpenseTimeSeriesService sums monthly buckets
+    @Test
+    void monthlySumUsesUserDateIndex() {
+        assertThat(plan("SELECT MIN(date), SUM(amount) FROM expenses "
+                + "WHERE user_id = 3 AND date >= DATE '2021-01-01' AND date <= DATE '2021-12-31' "
+                + "GROUP BY EXTRACT(YEAR FROM date), EXTRACT(MONTH FROM date)"))
+                .containsIgnoringCase("idx_expenses_user_date");
+    }
+
+    // As ExpenseRepository.findPageAfter
+    @Test
+    void keysetPageUsesUserDateIndex() {
+        assertThat(plan("SELECT id FROM expenses WHERE user_id = 3 "
+                + "AND (date < DATE '2021-06-01' OR (date = DATE '2021-06-01' AND id < 500)) "
+                + "ORDER BY date DESC, id DESC LIMIT 25"))
+                .containsIgnoringCase("idx_expenses_user_date");
+    }
+
+    @Test
+    void categoryFilterUsesUserCategoryIndex() {
+        int category = jdbcTemplate.queryForObject("SELECT MIN(category_id) FROM expenses WHERE user_id = 3",
+                Integer.class);
+        assertThat(plan("SELECT sub_category_id, SUM(amount) FROM expenses "
+                + "WHERE user_id = 3 AND category_id = " + category + " GROUP BY sub_category_id"))
+                .containsIgnoringCase("idx_expenses_user_category_id");
+    }
+
+    @Test
+    void cardFilterUsesUserCardIndex() {
+        int card = jdbcTemplate.queryForObject("SELECT MIN(card_id) FROM expenses WHERE user_id = 3",
+                Integer.class);
+        assertThat(plan("SELECT SUM(amount) FROM expenses WHERE user_id = 3 AND card_id = " + card))
+                .containsIgnoringCase("idx_expenses_user_card_id");
+    }
+
+    @Test
+    void passwordLookupByNameUsesUserNameIndex() {
+        assertThat(plan("SELECT id FROM password_entries WHERE user_id = 3 AND name = 'Entry 7'"))
+                .containsIgnoringCase("idx_password_entries_user_name");
+    }
+
+    private int label(long userId, String kind, String name) {
+        jdbcTemplate.update("INSERT INTO expense_labels (user_id, kind, name) VALUES (?, ?, ?)", userId, kind, name);
+        return jdbcTemplate.queryForObject("SELECT id FROM expense_labels WHERE user_id = ? AND kind = ? AND name = ?",
+                Integer.class, userId, kind, name);
+    }
+
+    private String plan(String sql) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.expensetracker.util;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Test helper over {@link SqlStatementCounter}:
+ * <pre>
+ * assertStatementCount(1, () -&gt; mockMvc.perform(get("/expenses")));
+ * </pre>
+ */
+public final class SqlStatementAssertions {
+
+    private SqlStatementAssertions() {
+    }
+
+    public static <T> T assertStatementCount(int expected, Callable<T> action) throws Exception {
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            T result = action.call();
+            if (scope.count() != expected) {
+                throw new AssertionError("Expected " + expected + " SQL statements but "
+                        + scope.count() + " ran:\n" + scope.describe());
+            }
+            return result;
+        }
+    }
+}